@@ -0,0 +1,210 @@
+package convert;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Generates synthetic betsy result directories for the benchmarks.<br>
+ * A directory contains tests-engine-dependent.json, tests-engine-independent.json, engines.json and
+ * feature-tree.json and the referenced files below the test directory, like an unconverted betsy run.
+ */
+final class BenchmarkData {
+
+    /**
+     * capabilities of the generated feature tree.
+     */
+    private static final String[] CAPABILITIES = {"Conformance", "Expressiveness"};
+
+    /**
+     * languages of every capability.
+     */
+    private static final String[] LANGUAGES = {"BPEL", "BPMN"};
+
+    /**
+     * groups of every language.
+     */
+    private static final int GROUPS = 2;
+
+    /**
+     * features of every construct.
+     */
+    private static final int FEATURES_PER_CONSTRUCT = 4;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Generates a result directory.
+     *
+     * @param dir          to be generated to
+     * @param engines      number of engines
+     * @param features     number of features, every engine has a test for every feature
+     * @param filesPerTest number of log files and engine dependent files per test
+     * @param run          number of the run, changes the content of the tests
+     * @throws IOException when the directory could not be written
+     */
+    static void generate(Path dir, int engines, int features, int filesPerTest, int run) throws IOException {
+        Path testDir = dir.resolve("test");
+        Files.createDirectories(testDir);
+        JSONArray dependent = new JSONArray();
+        JSONArray independent = new JSONArray();
+        for (int f = 0; f < features; f++) {
+            String featureId = featureId(f);
+            JSONArray independentFiles = new JSONArray();
+            for (int i = 0; i < filesPerTest; i++) {
+                independentFiles.put(writeFile(dir, "test/process/" + f + "/process" + i + ".xml", "process " + f));
+            }
+            independent.put(new JSONObject()
+                    .put(Constants.FEATURE_ID_TOKEN, featureId)
+                    .put(Constants.ENGINE_INDEPENDENT_FILES_TOKEN, independentFiles));
+            for (int e = 0; e < engines; e++) {
+                JSONArray dependentFiles = new JSONArray();
+                JSONArray logFiles = new JSONArray();
+                for (int i = 0; i < filesPerTest; i++) {
+                    dependentFiles.put(writeFile(dir, "test/engine" + e + "/" + f + "/deploy" + i + ".zip",
+                            "deployment " + f + " " + e));
+                    logFiles.put(writeFile(dir, "test/engine" + e + "/" + f + "/log" + i + ".txt",
+                            "log " + run + " " + f + " " + e));
+                }
+                JSONObject testCase = new JSONObject().put("number", 1).put("successful", (f + run) % 3 != 0)
+                        .put("duration", 1000 + f);
+                dependent.put(new JSONObject()
+                        .put(Constants.FEATURE_ID_TOKEN, featureId)
+                        .put(Constants.ENGINE_ID_TOKEN, "engine" + e)
+                        .put(Constants.EXECUTION_TIMESTAMP_TOKEN, run * 1000000L + f)
+                        .put(Constants.ENGINE_DEPENDENT_FILES_TOKEN, dependentFiles)
+                        .put(Constants.LOG_FILES_TOKEN, logFiles)
+                        .put("result", new JSONObject().put("testCases", new JSONArray().put(testCase))));
+            }
+        }
+        JSONArray engineArray = new JSONArray();
+        for (int e = 0; e < engines; e++) {
+            engineArray.put(new JSONObject().put(Constants.ID_TOKEN, "engine" + e).put(Constants.NAME_TOKEN, "engine")
+                    .put("version", "1." + e));
+        }
+        write(dir.resolve("tests-engine-dependent.json"), dependent);
+        write(dir.resolve("tests-engine-independent.json"), independent);
+        write(dir.resolve("engines.json"), engineArray);
+        write(dir.resolve("feature-tree.json"), featureTree(features));
+    }
+
+    /**
+     * Maps the number of a feature to its id. The features are spread evenly over the feature tree.
+     *
+     * @param feature number of the feature
+     * @return the id of the feature
+     */
+    static String featureId(int feature) {
+        int construct = feature / FEATURES_PER_CONSTRUCT;
+        int group = construct % GROUPS;
+        int language = (construct / GROUPS) % LANGUAGES.length;
+        int capability = (construct / GROUPS / LANGUAGES.length) % CAPABILITIES.length;
+        return CAPABILITIES[capability] + "__" + LANGUAGES[language] + "__group" + group + "__construct" + construct
+                + "__feature" + feature;
+    }
+
+    private static JSONArray featureTree(int features) {
+        JSONObject root = new JSONObject();
+        for (int f = 0; f < features; f++) {
+            String[] parts = featureId(f).split("__");
+            String id = parts[0];
+            JSONObject node = child(root, "capabilities", id);
+            String[] levels = {"languages", "groups", "constructs", "features"};
+            for (int level = 0; level < levels.length; level++) {
+                id += "__" + parts[level + 1];
+                node = child(node, levels[level], id);
+            }
+        }
+        JSONArray capabilities = root.getJSONArray("capabilities");
+        //every level needs at least as many entries as there are capabilities
+        for (int i = capabilities.length(); i < CAPABILITIES.length; i++) {
+            capabilities.put(new JSONObject().put(Constants.ID_TOKEN, CAPABILITIES[i])
+                    .put("languages", new JSONArray()));
+        }
+        return capabilities;
+    }
+
+    private static JSONObject child(JSONObject parent, String token, String id) {
+        if (!parent.has(token)) {
+            parent.put(token, new JSONArray());
+        }
+        JSONArray children = parent.getJSONArray(token);
+        for (int i = 0; i < children.length(); i++) {
+            if (children.getJSONObject(i).getString(Constants.ID_TOKEN).equals(id)) {
+                return children.getJSONObject(i);
+            }
+        }
+        JSONObject child = new JSONObject().put(Constants.ID_TOKEN, id).put(Constants.NAME_TOKEN, id);
+        children.put(child);
+        return child;
+    }
+
+    private static String writeFile(Path dir, String path, String content) throws IOException {
+        Path file = dir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    private static void write(Path file, JSONArray array) throws IOException {
+        Files.write(file, array.toString(1).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Copies a directory recursively.
+     *
+     * @param source to be copied
+     * @param target to be created
+     * @throws IOException when the directory could not be copied
+     */
+    static void copy(Path source, Path target) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, target.resolve(source.relativize(file).toString()),
+                        StandardCopyOption.REPLACE_EXISTING);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Deletes a directory recursively.
+     *
+     * @param dir to be deleted
+     * @throws IOException when the directory could not be deleted
+     */
+    static void delete(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
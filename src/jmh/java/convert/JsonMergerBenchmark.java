@@ -0,0 +1,121 @@
+package convert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the merge modes of the {@link JsonMerger}.<br>
+ * Every invocation merges fresh copies of the generated runs, because merging converts the inputs in place.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class JsonMergerBenchmark {
+
+    @Param({"2", "10"})
+    public int engines;
+
+    @Param({"100", "1000"})
+    public int features;
+
+    @Param({"1", "4"})
+    public int filesPerTest;
+
+    /**
+     * the generated runs, never modified.
+     */
+    private Path pristine;
+
+    /**
+     * copy of the {@link #pristine} runs used by one invocation.
+     */
+    private Path work;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        pristine = Files.createTempDirectory("merge-benchmark");
+        for (int run = 1; run <= 3; run++) {
+            //later runs cover more features, like a growing history
+            BenchmarkData.generate(pristine.resolve("run" + run), engines, features * run / 3, filesPerTest, run);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() throws IOException {
+        work = Files.createTempDirectory("merge-benchmark-work");
+        BenchmarkData.copy(pristine, work);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clean() throws IOException {
+        BenchmarkData.delete(work);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        BenchmarkData.delete(pristine);
+    }
+
+    private String file(int run, String name) {
+        return work.resolve("run" + run).resolve(name).toString();
+    }
+
+    @Benchmark
+    public void mergeEngineDependent() {
+        new JsonMerger(file(2, "tests-engine-dependent.json"), file(3, "tests-engine-dependent.json")).merge();
+    }
+
+    @Benchmark
+    public void mergeEngineIndependent() {
+        new JsonMerger(file(2, "tests-engine-independent.json"), file(3, "tests-engine-independent.json")).merge();
+    }
+
+    @Benchmark
+    public void mergeEngines() {
+        new JsonMerger(file(2, "engines.json"), file(3, "engines.json")).merge();
+    }
+
+    @Benchmark
+    public void mergeFeatureTree() {
+        new JsonMerger(file(2, "feature-tree.json"), file(3, "feature-tree.json")).merge();
+    }
+
+    @Benchmark
+    public void mergeDirectory() {
+        new JsonMerger(work.resolve("run2").toString(), work.resolve("run3").toString()).merge();
+    }
+
+    @Benchmark
+    public void mergeMany() {
+        new JsonMerger(Arrays.asList(file(1, "tests-engine-dependent.json"), file(2, "tests-engine-dependent.json"),
+                file(3, "tests-engine-dependent.json"))).merge();
+    }
+
+    @Benchmark
+    public void mergeManyByTimestamp() {
+        JsonMerger merger = new JsonMerger(Arrays.asList(file(1, "tests-engine-dependent.json"),
+                file(2, "tests-engine-dependent.json"), file(3, "tests-engine-dependent.json")));
+        merger.setByTimestamp(true);
+        merger.merge();
+    }
+}
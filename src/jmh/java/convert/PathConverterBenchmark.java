@@ -0,0 +1,84 @@
+package convert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link PathConverter#convert()} of the engine dependent and engine independent tests.<br>
+ * Every invocation converts a fresh copy of the generated run, because the conversion works in place.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PathConverterBenchmark {
+
+    @Param({"2", "10"})
+    public int engines;
+
+    @Param({"100", "1000"})
+    public int features;
+
+    @Param({"1", "4"})
+    public int filesPerTest;
+
+    /**
+     * the generated run, never modified.
+     */
+    private Path pristine;
+
+    /**
+     * copy of the {@link #pristine} run used by one invocation.
+     */
+    private Path work;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        pristine = Files.createTempDirectory("convert-benchmark");
+        BenchmarkData.generate(pristine, engines, features, filesPerTest, 1);
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() throws IOException {
+        work = Files.createTempDirectory("convert-benchmark-work");
+        BenchmarkData.copy(pristine, work);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clean() throws IOException {
+        BenchmarkData.delete(work);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        BenchmarkData.delete(pristine);
+    }
+
+    @Benchmark
+    public void convertEngineDependent() {
+        new PathConverter(work.resolve("tests-engine-dependent.json").toString(), true).convert();
+    }
+
+    @Benchmark
+    public void convertEngineIndependent() {
+        new PathConverter(work.resolve("tests-engine-independent.json").toString(), true).convert();
+    }
+}
@@ -0,0 +1,110 @@
+package convert;
+
+import java.io.File;
+
+/**
+ * Packs the files of the tests into zip archives instead of a directory tree: files/&lt;archive&gt;.zip!/&lt;path of
+ * the wrapped layout below files&gt;, e.g. files/engine0.zip!/logs/engine0/123/log0.txt.<br>
+ * The archive of a test is its engine, or engineIndependent for the engine independent files. With grouping by
+ * feature group every engine gets one archive per group of features. The archives are written by the
+ * {@link ArchiveStore}. Selected with the command line option --archive[=engine|group].
+ */
+public class ArchiveLayout extends FileLayout {
+
+    /**
+     * marks the end of the archive in a path, the entry follows after the next separator.
+     */
+    public static final String ARCHIVE_SUFFIX = ".zip!";
+
+    /**
+     * name of the archive of the engine independent files.
+     */
+    private static final String ENGINE_INDEPENDENT_ARCHIVE = "engineIndependent";
+
+    /**
+     * layout of the entries in the archives.
+     */
+    private final FileLayout entries;
+
+    /**
+     * true for one archive per engine and feature group, false for one archive per engine.
+     */
+    private final boolean byGroup;
+
+    /**
+     * Constructor.
+     *
+     * @param entries layout of the entries in the archives
+     * @param byGroup true for one archive per engine and feature group, false for one archive per engine
+     */
+    public ArchiveLayout(FileLayout entries, boolean byGroup) {
+        if (entries instanceof ArchiveLayout) {
+            entries = ((ArchiveLayout) entries).entries;
+        }
+        this.entries = entries;
+        this.byGroup = byGroup;
+    }
+
+    /**
+     * Creates the archive layout with the grouping of the name.
+     *
+     * @param entries layout of the entries in the archives
+     * @param name    of the grouping, engine or group
+     * @return the layout
+     * @throws IllegalArgumentException when there is no grouping with the name
+     */
+    public static ArchiveLayout forName(FileLayout entries, String name) {
+        if (name.equals("engine")) {
+            return new ArchiveLayout(entries, false);
+        } else if (name.equals("group")) {
+            return new ArchiveLayout(entries, true);
+        }
+        throw new IllegalArgumentException("Unknown archive grouping: " + name);
+    }
+
+    @Override
+    public String directory(String category, String engineId, String featureId) {
+        String directory = entries.directory(category, engineId, featureId);
+        return FILES + File.separator + archive(category, engineId, featureId) + ARCHIVE_SUFFIX
+                + directory.substring(FILES.length());
+    }
+
+    /**
+     * @param path of a file, in an archive or not
+     * @return the path the file would have in the files directory if it was not archived
+     */
+    public static String unpacked(String path) {
+        int end = path.indexOf(ARCHIVE_SUFFIX);
+        if (end < 0) {
+            return path;
+        }
+        int start = path.lastIndexOf(File.separator, end);
+        if (start < 0) {
+            start = path.lastIndexOf('/', end);
+        }
+        return path.substring(0, start + 1) + path.substring(end + ARCHIVE_SUFFIX.length() + 1);
+    }
+
+    /**
+     * @param category  of the files
+     * @param engineId  of the test
+     * @param featureId of the test
+     * @return the name of the archive of the files, without the .zip extension
+     */
+    private String archive(String category, String engineId, String featureId) {
+        String archive = category.equals(ENGINE_INDEPENDENT) ? ENGINE_INDEPENDENT_ARCHIVE : engineId;
+        return byGroup ? archive + "__" + group(featureId) : archive;
+    }
+
+    /**
+     * @param featureId of a test, capability__language__group__construct__feature
+     * @return the capability, language and group of the feature
+     */
+    private static String group(String featureId) {
+        String[] parts = featureId.split("__");
+        if (parts.length < 3) {
+            return featureId;
+        }
+        return parts[0] + "__" + parts[1] + "__" + parts[2];
+    }
+}
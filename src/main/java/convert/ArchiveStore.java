@@ -0,0 +1,264 @@
+package convert;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes the files packed by the {@link ArchiveLayout}, i.e. paths like files/engine0.zip!/logs/....<br>
+ * The archives are opened as zip file systems on first use and stay open until {@link #close()}, so every archive
+ * is rewritten once per conversion or merge, however many files are added. Existing archives are appended to. When
+ * an archive is closed, its entries are listed in the central index files/archives.json next to it.<br>
+ * Code running on virtual threads must not read or write archives while holding a monitor: the zip file systems
+ * park on their locks, which pins the carrier thread.
+ */
+public final class ArchiveStore {
+
+    /**
+     * name of the central index of the archives of a files directory.
+     */
+    public static final String INDEX_NAME = "archives.json";
+
+    /**
+     * the open archives by their path.
+     */
+    private static final ConcurrentMap<Path, FileSystem> OPEN = new ConcurrentHashMap<>();
+
+    private ArchiveStore() {
+    }
+
+    /**
+     * @param path of a file
+     * @return true if the file is inside an archive
+     */
+    public static boolean isArchived(Path path) {
+        return path.toString().contains(ArchiveLayout.ARCHIVE_SUFFIX);
+    }
+
+    /**
+     * @param path of a file inside an archive
+     * @return the path of the archive
+     */
+    private static Path archive(Path path) {
+        String p = path.toString();
+        return path.getFileSystem().getPath(p.substring(0, p.indexOf(ArchiveLayout.ARCHIVE_SUFFIX) + ".zip".length()));
+    }
+
+    /**
+     * @param archive path of an archive or a directory
+     * @return the normalized absolute path, the key of the {@link #OPEN} archives
+     */
+    private static Path key(Path archive) {
+        return archive.toAbsolutePath().normalize();
+    }
+
+    /**
+     * @param path of a file inside an archive
+     * @return the path of the entry in the archive
+     */
+    private static String entry(Path path) {
+        String p = path.toString();
+        return p.substring(p.indexOf(ArchiveLayout.ARCHIVE_SUFFIX) + ArchiveLayout.ARCHIVE_SUFFIX.length() + 1);
+    }
+
+    /**
+     * @param path of a file, in an archive or not
+     * @return the directory that has to exist before the file can be created, i.e. the directory of the archive
+     * for archived files
+     */
+    public static Path directoryOf(Path path) {
+        return isArchived(path) ? archive(path).toAbsolutePath().getParent() : path.toAbsolutePath().getParent();
+    }
+
+    /**
+     * Resolves a path to the file system it lies in.
+     *
+     * @param path of a file, in an archive or not
+     * @return the path in the zip file system of the archive, or the path itself if it is not archived or the
+     * archive does not exist
+     * @throws IOException when the archive could not be opened
+     */
+    public static Path resolve(Path path) throws IOException {
+        if (!isArchived(path) || (!OPEN.containsKey(key(archive(path))) && !Files.exists(archive(path)))) {
+            return path;
+        }
+        return inArchive(path);
+    }
+
+    /**
+     * @param path of a file inside an archive
+     * @return the path in the zip file system of the archive, which is opened or created if necessary
+     * @throws IOException when the archive could not be opened
+     */
+    private static Path inArchive(Path path) throws IOException {
+        return open(archive(path)).getPath("/" + entry(path).replace(path.getFileSystem().getSeparator(), "/"));
+    }
+
+    /**
+     * Copies a file. Source and target may be in an archive, the archive of the target is created if necessary.
+     * An existing target is replaced.
+     *
+     * @param source to be copied
+     * @param target to be created
+     * @throws IOException when the file could not be copied
+     */
+    public static void copy(Path source, Path target) throws IOException {
+        Path from = resolve(source);
+        Path to = isArchived(target) ? inArchive(target) : target;
+        if (to.getParent() != null) {
+            Files.createDirectories(to.getParent());
+        }
+        Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Moves a file. Source and target may be in an archive, the archive of the target is created if necessary.
+     *
+     * @param source to be moved
+     * @param target to be created
+     * @throws IOException when the file could not be moved
+     */
+    public static void move(Path source, Path target) throws IOException {
+        copy(source, target);
+        Files.delete(resolve(source));
+    }
+
+    /**
+     * Opens an archive, creating it if it does not exist.
+     *
+     * @param archive to be opened
+     * @return the zip file system of the archive
+     * @throws IOException when the archive could not be opened
+     */
+    private static FileSystem open(Path archive) throws IOException {
+        try {
+            return OPEN.computeIfAbsent(key(archive), a -> {
+                Map<String, Object> env = new HashMap<>();
+                env.put("create", "true");
+                //new entries are buffered in temporary files instead of the heap until the archive is written
+                env.put("useTempFile", Boolean.TRUE);
+                try {
+                    return FileSystems.newFileSystem(URI.create("jar:" + a.toUri()), env);
+                } catch (IOException e) {
+                    throw new ArchiveException(e);
+                }
+            });
+        } catch (ArchiveException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes all open archives and updates their central indexes.
+     */
+    public static void close() {
+        close(null);
+    }
+
+    /**
+     * Writes the open archives of a files directory and updates their central index. The archives of other
+     * directories may still be written concurrently.
+     *
+     * @param directory containing the archives, null for all directories
+     */
+    public static synchronized void close(Path directory) {
+        Path dir = directory == null ? null : key(directory);
+        for (Path archive : new ArrayList<>(OPEN.keySet())) {
+            if (dir != null && !dir.equals(archive.getParent())) {
+                continue;
+            }
+            FileSystem fs = OPEN.remove(archive);
+            try {
+                JSONArray entries = list(fs);
+                fs.close();
+                if (entries.length() == 0) {
+                    //all files were moved out of the archive
+                    Files.deleteIfExists(archive);
+                }
+                index(archive, entries);
+            } catch (IOException e) {
+                System.err.println("Could not write archive: " + archive);
+                System.err.println("Reason: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param fs zip file system of an archive
+     * @return the entries of the archive with their size, sorted by path
+     * @throws IOException when the archive could not be read
+     */
+    private static JSONArray list(FileSystem fs) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(fs.getPath("/"))) {
+            files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        JSONArray entries = new JSONArray();
+        for (Path file : files) {
+            JSONObject entry = new JSONObject();
+            entry.put("path", file.toString().substring(1));
+            entry.put("size", Files.size(file));
+            entries.put(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Replaces the entries of an archive in the central index of its directory. Archives without entries are
+     * removed from the index, an empty index is deleted.
+     *
+     * @param archive written archive
+     * @param entries of the archive
+     * @throws IOException when the index could not be written
+     */
+    private static void index(Path archive, JSONArray entries) throws IOException {
+        Path index = archive.resolveSibling(INDEX_NAME);
+        JSONObject archives = Files.exists(index)
+                ? new JSONObject(new String(Files.readAllBytes(index), StandardCharsets.UTF_8)) : new JSONObject();
+        if (entries.length() == 0) {
+            archives.remove(archive.getFileName().toString());
+        } else {
+            archives.put(archive.getFileName().toString(), entries);
+        }
+        if (archives.length() == 0) {
+            Files.deleteIfExists(index);
+            return;
+        }
+        Path tmp = index.resolveSibling(INDEX_NAME + ".tmp");
+        Files.write(tmp, archives.toString(1).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Wraps the {@link IOException} of opening an archive inside {@link Map#computeIfAbsent}.
+     */
+    private static final class ArchiveException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        ArchiveException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
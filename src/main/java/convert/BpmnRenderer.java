@@ -0,0 +1,193 @@
+package convert;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders the images of bpmn process files, i.e. &lt;file&gt;.bpmn.png next to every &lt;file&gt;.bpmn.<br>
+ * The rendered images are cached by the sha-256 hash of the process file, so a process that occurs for every engine
+ * and in every run is rendered once. The cache misses are rendered by a pool of {@link #RENDER_THREADS} threads,
+ * hashing the process files and copying the images runs on the {@link IoExecutor}.
+ */
+public final class BpmnRenderer {
+
+    /**
+     * suffix of the rendered images.
+     */
+    public static final String IMAGE_SUFFIX = ".png";
+
+    /**
+     * maximum number of processes rendered concurrently.
+     */
+    private static final int RENDER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * directory of the cached images, named by the hash of their process.
+     */
+    private static volatile Path cacheDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "bpmn-image-cache");
+
+    private BpmnRenderer() {
+    }
+
+    /**
+     * @param cacheDirectory directory of the cached images
+     */
+    public static void setCacheDirectory(Path cacheDirectory) {
+        BpmnRenderer.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Creates the images of the process files, either from the cache or by rendering them.
+     *
+     * @param bpmnFiles distinct process files
+     */
+    public static void render(Collection<Path> bpmnFiles) {
+        if (bpmnFiles.isEmpty()) {
+            return;
+        }
+        Map<String, List<Path>> byHash = hash(bpmnFiles);
+        Path cache = cacheDirectory;
+        Map<Path, List<Path>> misses = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Path>> e : byHash.entrySet()) {
+            Path cached = cache.resolve(e.getKey() + IMAGE_SUFFIX);
+            if (!Files.isRegularFile(cached)) {
+                misses.put(cached, e.getValue());
+            }
+        }
+        System.out.println("Rendering " + misses.size() + " of " + byHash.size() + " distinct bpmn processes.");
+        if (!misses.isEmpty()) {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(RENDER_THREADS, misses.size()));
+            try {
+                List<Future<?>> results = new ArrayList<>();
+                for (Map.Entry<Path, List<Path>> e : misses.entrySet()) {
+                    results.add(executor.submit(() -> renderImage(e.getKey(), e.getValue().get(0))));
+                }
+                await(results);
+            } finally {
+                executor.shutdown();
+            }
+        }
+        IoExecutor.forEach(byHash.keySet(), hash -> copyImages(cache.resolve(hash + IMAGE_SUFFIX), byHash.get(hash)));
+    }
+
+    /**
+     * Groups the process files by the hash of their content.
+     *
+     * @param bpmnFiles to be hashed
+     * @return the files by hash, files that could not be read are left out
+     */
+    private static Map<String, List<Path>> hash(Collection<Path> bpmnFiles) {
+        Map<Path, Future<String>> hashes = new LinkedHashMap<>();
+        for (Path bpmnFile : bpmnFiles) {
+            hashes.put(bpmnFile, IoExecutor.submit(() -> ContentStore.hash(bpmnFile)));
+        }
+        Map<String, List<Path>> byHash = new LinkedHashMap<>();
+        for (Map.Entry<Path, Future<String>> e : hashes.entrySet()) {
+            try {
+                byHash.computeIfAbsent(e.getValue().get(), k -> new ArrayList<>()).add(e.getKey());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return byHash;
+            } catch (ExecutionException ex) {
+                System.err.println("Could not read bpmn file: " + e.getKey());
+                System.err.println("Reason: " + ex.getCause().getMessage());
+            }
+        }
+        return byHash;
+    }
+
+    /**
+     * Renders a process and adds its image to the cache.
+     *
+     * @param cached   image of the process in the cache
+     * @param bpmnFile to be rendered
+     */
+    private static void renderImage(Path cached, Path bpmnFile) {
+        try {
+            bpmnviz.Main.createImage(bpmnFile);
+            Path image = image(bpmnFile);
+            if (!Files.isRegularFile(image)) {
+                System.err.println("Could not render bpmn file: " + bpmnFile);
+                return;
+            }
+            store(image, cached);
+        } catch (IOException e) {
+            System.err.println("Could not create image of: " + bpmnFile);
+            System.err.println("Reason: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copies a cached image next to the process files with the same content.
+     *
+     * @param cached    image of the processes in the cache
+     * @param bpmnFiles with the same content
+     */
+    private static void copyImages(Path cached, List<Path> bpmnFiles) {
+        if (!Files.isRegularFile(cached)) {
+            return;
+        }
+        for (Path bpmnFile : bpmnFiles) {
+            try {
+                Files.copy(cached, image(bpmnFile), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                System.err.println("Could not create image of: " + bpmnFile);
+                System.err.println("Reason: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds a rendered image to the cache.
+     *
+     * @param image  to be cached
+     * @param cached path of the image in the cache
+     * @throws IOException when the image could not be cached
+     */
+    private static void store(Path image, Path cached) throws IOException {
+        Files.createDirectories(cached.getParent());
+        Path tmp = Files.createTempFile(cached.getParent(), cached.getFileName().toString(), ".tmp");
+        try {
+            Files.copy(image, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, cached, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            //cached concurrently by another process
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @param bpmnFile process file
+     * @return the image of the process file
+     */
+    private static Path image(Path bpmnFile) {
+        return bpmnFile.resolveSibling(bpmnFile.getFileName() + IMAGE_SUFFIX);
+    }
+
+    private static void await(List<Future<?>> results) {
+        for (Future<?> result : results) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+    }
+}
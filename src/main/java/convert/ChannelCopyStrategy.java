@@ -0,0 +1,31 @@
+package convert;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Copies the file with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, which lets
+ * the operating system copy the bytes without moving them through the heap.
+ */
+public class ChannelCopyStrategy implements CopyStrategy {
+
+    @Override
+    public void copy(Path source, Path target) throws IOException {
+        if (FileCopier.isSameFile(source, target)) {
+            return;
+        }
+        //the target may be a hard link or a symbolic link of an earlier copy, writing to it would change the source
+        Files.deleteIfExists(target);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+}
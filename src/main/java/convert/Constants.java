@@ -13,4 +13,9 @@ public class Constants {
     public static final String NAME_TOKEN = "name";
     public static final String GROUP_TOKEN = "group";
     public static final String FEATURES_TOKEN = "features";
+    public static final String EXECUTION_TIMESTAMP_TOKEN = "executionTimestamp";
+    /**
+     * tokens of the levels below a capability in the feature-tree.json.
+     */
+    public static final String[] FEATURE_TREE_LEVELS = {"languages", "groups", "constructs", "features"};
 }
@@ -0,0 +1,127 @@
+package convert;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content addressed store for the test files of a files directory.<br>
+ * Every distinct content is stored once as files/.store/&lt;hash prefix&gt;/&lt;sha-256 hash&gt;, in the files
+ * directory the target lies in. The files referenced by the json files are hard links to the stored content, so
+ * identical process or log files are neither copied nor stored twice. Falls back to copying when the file system
+ * does not support hard links.
+ */
+public class ContentStore implements CopyStrategy {
+
+    /**
+     * name of the store directory inside the files directory.
+     */
+    public static final String STORE_DIRECTORY = ".store";
+
+    /**
+     * size of the buffer used for hashing.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Copies the source to the target through the store. Nothing is written when the target already is a link to
+     * the content of the source.
+     *
+     * @param source to be copied
+     * @param target to be created
+     * @throws IOException when the file could not be copied
+     */
+    @Override
+    public void copy(Path source, Path target) throws IOException {
+        Path stored = store(source, storeRoot(target));
+        if (Files.exists(target)) {
+            if (Files.isSameFile(target, stored)) {
+                return;
+            }
+            Files.delete(target);
+        }
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try {
+            Files.createLink(target, stored);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(stored, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Finds the store of a target: the .store directory of the closest files directory above the target, or of
+     * the directory of the target if it is not inside a files directory.
+     *
+     * @param target to be copied
+     * @return the root directory of the store
+     */
+    private static Path storeRoot(Path target) {
+        Path parent = target.toAbsolutePath().normalize().getParent();
+        for (Path dir = parent; dir != null; dir = dir.getParent()) {
+            if (dir.getFileName() != null && dir.getFileName().toString().equals("files")) {
+                return dir.resolve(STORE_DIRECTORY);
+            }
+        }
+        return parent.resolve(STORE_DIRECTORY);
+    }
+
+    /**
+     * Adds the content of the file to the store if it is not yet stored.
+     *
+     * @param source to be stored
+     * @param root   of the store
+     * @return the path of the stored content
+     * @throws IOException when the file could not be stored
+     */
+    private static Path store(Path source, Path root) throws IOException {
+        String hash = hash(source);
+        Path stored = root.resolve(hash.substring(0, 2)).resolve(hash);
+        if (Files.exists(stored)) {
+            return stored;
+        }
+        Files.createDirectories(stored.getParent());
+        Path tmp = Files.createTempFile(stored.getParent(), hash, ".tmp");
+        try {
+            Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, stored, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            //stored concurrently by another thread
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return stored;
+    }
+
+    /**
+     * Computes the sha-256 hash of the content of a file.
+     *
+     * @param file to be hashed
+     * @return the hash as lower case hex string
+     * @throws IOException when the file could not be read
+     */
+    static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,188 @@
+package convert;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Journal of a conversion (&lt;json file&gt;.journal), so that an interrupted conversion can be resumed.<br>
+ * Every completed copy is appended as "copied TAB target TAB size", the target relative to the directory of the
+ * json file. "converted TAB number of tests" is appended when the rewritten json file is in place. Copies are
+ * only skipped on resume when their target still has the journaled size, see {@link #verify()}.
+ */
+public class ConversionJournal implements Closeable {
+
+    /**
+     * suffix of the journal file.
+     */
+    public static final String SUFFIX = ".journal";
+
+    /**
+     * directory of the json file, the journaled targets are relative to it.
+     */
+    private final Path baseDir;
+
+    /**
+     * the journal file.
+     */
+    private final Path journalFile;
+
+    /**
+     * the journaled copies, target to size.
+     */
+    private final Map<Path, Long> copied = new LinkedHashMap<>();
+
+    /**
+     * number of converted tests, -1 if the json file is not converted yet.
+     */
+    private int converted = -1;
+
+    private final BufferedWriter writer;
+
+    private ConversionJournal(Path jsonFile, boolean append) throws IOException {
+        this.baseDir = jsonFile.toAbsolutePath().getParent();
+        this.journalFile = journalFile(jsonFile);
+        if (append && Files.exists(journalFile)) {
+            read();
+        }
+        this.writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Starts a new journal, an existing journal is discarded.
+     *
+     * @param jsonFile to be converted
+     * @return the journal
+     * @throws IOException when the journal could not be created
+     */
+    public static ConversionJournal create(Path jsonFile) throws IOException {
+        return new ConversionJournal(jsonFile, false);
+    }
+
+    /**
+     * Opens the existing journal to resume a conversion.
+     *
+     * @param jsonFile to be converted
+     * @return the journal
+     * @throws IOException when the journal could not be read
+     */
+    public static ConversionJournal resume(Path jsonFile) throws IOException {
+        return new ConversionJournal(jsonFile, true);
+    }
+
+    /**
+     * @param jsonFile to be converted
+     * @return the journal file of the json file
+     */
+    public static Path journalFile(Path jsonFile) {
+        return jsonFile.resolveSibling(jsonFile.getFileName() + SUFFIX);
+    }
+
+    private void read() throws IOException {
+        for (String line : Files.readAllLines(journalFile, StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t");
+            try {
+                if (parts[0].equals("copied") && parts.length == 3) {
+                    copied.put(baseDir.resolve(parts[1]), Long.parseLong(parts[2]));
+                } else if (parts[0].equals("converted") && parts.length == 2) {
+                    converted = Integer.parseInt(parts[1]);
+                }
+            } catch (NumberFormatException e) {
+                //line of an interrupted write
+            }
+        }
+    }
+
+    /**
+     * @return true when the rewritten json file is in place
+     */
+    public boolean isConverted() {
+        return converted >= 0;
+    }
+
+    /**
+     * @param target of a copy
+     * @return true when the copy is journaled and the target has the journaled size
+     */
+    public boolean isCopied(Path target) {
+        Long size;
+        synchronized (this) {
+            size = copied.get(target);
+        }
+        try {
+            return size != null && Files.size(ArchiveStore.resolve(target)) == size;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Journals a completed copy.
+     *
+     * @param target of the copy
+     * @throws IOException when the journal could not be written
+     */
+    public void copied(Path target) throws IOException {
+        //the target is read outside the lock, reading an archive waits for the copies into it
+        long size = Files.size(ArchiveStore.resolve(target));
+        synchronized (this) {
+            copied.put(target, size);
+            writer.write("copied\t" + baseDir.relativize(target) + "\t" + size);
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    /**
+     * Journals that the rewritten json file is in place.
+     *
+     * @param tests number of converted tests
+     * @throws IOException when the journal could not be written
+     */
+    public synchronized void converted(int tests) throws IOException {
+        converted = tests;
+        writer.write("converted\t" + tests);
+        writer.newLine();
+        writer.flush();
+    }
+
+    /**
+     * Checks the journaled copies against the files on disk. Copies whose target is missing or has another size
+     * are removed from the journal, so that they are copied again. Archived files are only on disk once their
+     * archive was written, an interrupted conversion copies them again.
+     *
+     * @return the targets that are missing or have another size
+     */
+    public synchronized List<Path> verify() {
+        List<Path> invalid = new ArrayList<>();
+        copied.keySet().removeIf(target -> {
+            if (!isCopied(target)) {
+                invalid.add(target);
+                return true;
+            }
+            return false;
+        });
+        return invalid;
+    }
+
+    /**
+     * @return the number of journaled copies
+     */
+    public synchronized int copies() {
+        return copied.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
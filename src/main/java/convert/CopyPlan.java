@@ -0,0 +1,213 @@
+package convert;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plan of the file copies of a conversion: source to target pairs with the size of the source.<br>
+ * Every target is copied once. The plan is executed in batches, one per source directory, sorted by the source
+ * path, so that every worker reads the files of one directory after another instead of jumping across the results
+ * tree. All file operations run on the {@link IoExecutor}. The plan can be printed instead of executed to estimate
+ * the I/O of a run.
+ */
+public class CopyPlan {
+
+    /**
+     * A planned copy.
+     */
+    public static final class Copy {
+
+        /**
+         * file to be copied.
+         */
+        public final Path source;
+
+        /**
+         * file to be created.
+         */
+        public final Path target;
+
+        /**
+         * size of the source in bytes, -1 if the source does not exist yet. Set when the plan is measured.
+         */
+        public volatile long size = -1;
+
+        Copy(Path source, Path target) {
+            this.source = source;
+            this.target = target;
+        }
+    }
+
+    /**
+     * the planned copies by target.
+     */
+    private final Map<Path, Copy> copies = new LinkedHashMap<>();
+
+    /**
+     * whether the sizes of the sources are known.
+     */
+    private boolean measured;
+
+    /**
+     * Adds a copy to the plan. A later copy to the same target replaces the earlier one.
+     *
+     * @param source to be copied
+     * @param target to be created
+     */
+    public void add(Path source, Path target) {
+        copies.put(target, new Copy(source, target));
+        measured = false;
+    }
+
+    /**
+     * Reads the sizes of the sources that are not known yet.
+     */
+    private void measure() {
+        if (measured) {
+            return;
+        }
+        IoExecutor.forEach(copies.values(), copy -> {
+            try {
+                copy.size = Files.size(copy.source);
+            } catch (IOException e) {
+                copy.size = -1;
+            }
+        });
+        measured = true;
+    }
+
+    /**
+     * @return the number of planned copies
+     */
+    public int size() {
+        return copies.size();
+    }
+
+    /**
+     * @return the number of bytes to be copied, without the sources that do not exist yet
+     */
+    public long totalBytes() {
+        measure();
+        return copies.values().stream().mapToLong(c -> Math.max(0, c.size)).sum();
+    }
+
+    /**
+     * @return the copies grouped by the directory of their source, sorted by the source path
+     */
+    public List<List<Copy>> batches() {
+        List<Copy> sorted = new ArrayList<>(copies.values());
+        sorted.sort(Comparator.comparing((Copy c) -> String.valueOf(c.source.getParent()))
+                .thenComparing(c -> c.source.getFileName().toString()));
+        List<List<Copy>> batches = new ArrayList<>();
+        List<Copy> batch = null;
+        for (Copy copy : sorted) {
+            if (batch == null || !Objects.equals(batch.get(0).source.getParent(), copy.source.getParent())) {
+                batch = new ArrayList<>();
+                batches.add(batch);
+            }
+            batch.add(copy);
+        }
+        return batches;
+    }
+
+    /**
+     * Prints the plan in the order it would be executed.
+     *
+     * @param out to print to
+     */
+    public void print(PrintStream out) {
+        measure();
+        for (List<Copy> batch : batches()) {
+            out.println(batch.get(0).source.getParent() + ":");
+            for (Copy copy : batch) {
+                out.println("  " + copy.source.getFileName() + " -> " + copy.target + " ("
+                        + (copy.size < 0 ? "missing" : copy.size + " bytes") + ")");
+            }
+        }
+        out.println("Planned " + size() + " copies with " + totalBytes() + " bytes.");
+    }
+
+    /**
+     * Executes the plan. Every target directory is created once, then the batches are copied on the
+     * {@link IoExecutor}.
+     *
+     * @return the number of copies that failed
+     */
+    public int execute() {
+        return execute(null);
+    }
+
+    /**
+     * Executes the plan, skipping the copies completed according to the journal and journaling the completed
+     * copies.
+     *
+     * @param journal of the conversion, may be null
+     * @return the number of copies that failed, they are not journaled
+     */
+    public int execute(ConversionJournal journal) {
+        if (journal != null) {
+            int planned = copies.size();
+            copies.values().removeIf(copy -> journal.isCopied(copy.target));
+            if (copies.size() < planned) {
+                System.out.println("Skipping " + (planned - copies.size()) + " files copied before.");
+            }
+        }
+        if (copies.isEmpty()) {
+            return 0;
+        }
+        Set<Path> directories = new LinkedHashSet<>();
+        copies.keySet().forEach(target -> directories.add(ArchiveStore.directoryOf(target)));
+        IoExecutor.forEach(directories, directory -> {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                System.err.println("Could not create directory: " + directory);
+                System.err.println("Reason: " + e.getMessage());
+            }
+        });
+        List<List<Copy>> batches = batches();
+        System.out.println("Copying " + size() + " files in " + batches.size() + " batches.");
+        AtomicInteger failed = new AtomicInteger();
+        IoExecutor.forEach(batches, batch -> batch.forEach(copy -> {
+            if (!copy(copy, journal)) {
+                failed.incrementAndGet();
+            }
+        }));
+        //other plans may write archives of other directories at the same time
+        directories.forEach(ArchiveStore::close);
+        copies.clear();
+        return failed.get();
+    }
+
+    /**
+     * Copies a file and journals the copy.
+     *
+     * @param copy    to be executed
+     * @param journal of the conversion, may be null
+     * @return false if the file could not be copied
+     */
+    private static boolean copy(Copy copy, ConversionJournal journal) {
+        try {
+            FileCopier.copy(copy.source, copy.target);
+            if (journal != null) {
+                journal.copied(copy.target);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not copy file: " + copy.source.toString() + " -> " + copy.target.toString());
+            System.err.println("Reason: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package convert;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Strategy used to copy the test files. Selected with the command line option --copy=&lt;name&gt;.
+ * <ul>
+ * <li>copy: {@link Files#copy(Path, Path, java.nio.file.CopyOption...)} (default)</li>
+ * <li>transfer: {@link ChannelCopyStrategy}, copies with {@code FileChannel.transferTo}</li>
+ * <li>hardlink: {@link LinkCopyStrategy}, hard links the target to the source</li>
+ * <li>symlink: {@link LinkCopyStrategy}, symbolic links the target to the source</li>
+ * <li>dedup: {@link ContentStore}, hard links the target to a content addressed store</li>
+ * </ul>
+ */
+public interface CopyStrategy {
+
+    /**
+     * Copies the source to the target. An existing target is replaced, the parent directory of the target has
+     * to exist.
+     *
+     * @param source to be copied
+     * @param target to be created
+     * @throws IOException when the file could not be copied
+     */
+    void copy(Path source, Path target) throws IOException;
+
+    /**
+     * Creates the strategy with the name.
+     *
+     * @param name of the strategy
+     * @return the strategy
+     * @throws IllegalArgumentException when there is no strategy with the name
+     */
+    static CopyStrategy forName(String name) {
+        switch (name) {
+            case "copy":
+                return (source, target) -> Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+            case "transfer":
+                return new ChannelCopyStrategy();
+            case "hardlink":
+                return new LinkCopyStrategy(false);
+            case "symlink":
+                return new LinkCopyStrategy(true);
+            case "dedup":
+                return new ContentStore();
+            default:
+                throw new IllegalArgumentException("Unknown copy strategy: " + name);
+        }
+    }
+}
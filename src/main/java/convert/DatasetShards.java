@@ -0,0 +1,276 @@
+package convert;
+
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the engine dependent tests of a merged json file a second time, split into shards by engine, so that a
+ * page showing the results of one engine only loads the shard of the engine.<br>
+ * The shards of tests-engine-dependent.json are written to tests-engine-dependent-shards/&lt;engine&gt;.json, or
+ * &lt;engine&gt;__&lt;capability&gt;.json when split by capability as well. The index.json of the directory lists
+ * every shard with its engine, capability, file, number of tests and size in bytes. The shards are written while
+ * the merged file is written and replace the old shards when the merged file is in place. Enabled with the command
+ * line option --shards[=engine|capability].
+ */
+public class DatasetShards implements Closeable {
+
+    /**
+     * suffix of the shard directory of a json file.
+     */
+    public static final String DIRECTORY_SUFFIX = "-shards";
+
+    /**
+     * name of the index of the shards.
+     */
+    public static final String INDEX_NAME = "index.json";
+
+    /**
+     * true to split by engine and capability, false to split by engine, null if no shards are written.
+     */
+    private static volatile Boolean byCapability;
+
+    /**
+     * A shard being written.
+     */
+    private static final class Shard {
+
+        /**
+         * engine of the tests of the shard.
+         */
+        private final String engineId;
+
+        /**
+         * capability of the tests of the shard, null when not split by capability.
+         */
+        private final String capability;
+
+        /**
+         * file name of the shard.
+         */
+        private final String file;
+
+        /**
+         * writer of the shard.
+         */
+        private final JsonArrayWriter out;
+
+        private Shard(String engineId, String capability, String file, JsonArrayWriter out) {
+            this.engineId = engineId;
+            this.capability = capability;
+            this.file = file;
+            this.out = out;
+        }
+    }
+
+    /**
+     * the shard directory.
+     */
+    private final Path directory;
+
+    /**
+     * the directory the shards are written to until they are committed.
+     */
+    private final Path tmpDirectory;
+
+    /**
+     * true to split by capability as well.
+     */
+    private final boolean capabilities;
+
+    /**
+     * the shards by file name.
+     */
+    private final Map<String, Shard> shards = new TreeMap<>();
+
+    /**
+     * true when the shards are closed.
+     */
+    private boolean closed;
+
+    /**
+     * true when the shards are in place.
+     */
+    private boolean committed;
+
+    /**
+     * Constructor.
+     *
+     * @param jsonFile     the shards are split from
+     * @param byCapability true to split by capability as well
+     * @throws IOException when the shard directory could not be created
+     */
+    private DatasetShards(Path jsonFile, boolean byCapability) throws IOException {
+        this.directory = directoryOf(jsonFile);
+        this.tmpDirectory = directory.resolveSibling(directory.getFileName() + ".tmp");
+        this.capabilities = byCapability;
+        delete(tmpDirectory);
+        Files.createDirectories(tmpDirectory);
+    }
+
+    /**
+     * @param grouping of the shards, engine or capability, null to write no shards
+     * @throws IllegalArgumentException when there is no grouping with the name
+     */
+    public static void setGrouping(String grouping) {
+        if (grouping == null) {
+            byCapability = null;
+        } else if (grouping.equals("engine")) {
+            byCapability = false;
+        } else if (grouping.equals("capability")) {
+            byCapability = true;
+        } else {
+            throw new IllegalArgumentException("Unknown shard grouping: " + grouping);
+        }
+    }
+
+    /**
+     * Starts the shards of a json file if shards are enabled.
+     *
+     * @param jsonFile the shards are split from, its final path
+     * @return the shards, null if shards are not enabled
+     * @throws IOException when the shard directory could not be created
+     */
+    public static DatasetShards open(Path jsonFile) throws IOException {
+        Boolean grouping = byCapability;
+        return grouping == null ? null : new DatasetShards(jsonFile, grouping);
+    }
+
+    /**
+     * Starts rewriting the existing shards of a json file with their grouping, e.g. when the paths of the json file
+     * are rewritten.
+     *
+     * @param jsonFile the shards are split from, its final path
+     * @return the shards, null if the json file has no shards
+     * @throws IOException when the index of the shards could not be read or the shard directory not be created
+     */
+    public static DatasetShards reopen(Path jsonFile) throws IOException {
+        Path dir = directoryOf(jsonFile);
+        if (!Files.isDirectory(dir)) {
+            return null;
+        }
+        boolean[] grouped = new boolean[1];
+        if (Files.exists(dir.resolve(INDEX_NAME))) {
+            JsonArrayReader.forEach(dir.resolve(INDEX_NAME).toString(),
+                    entry -> grouped[0] |= entry.has("capability"));
+        }
+        return new DatasetShards(jsonFile, grouped[0]);
+    }
+
+    /**
+     * @param jsonFile the shards are split from
+     * @return the shard directory of the json file
+     */
+    private static Path directoryOf(Path jsonFile) {
+        String name = jsonFile.getFileName().toString();
+        if (name.endsWith(".json")) {
+            name = name.substring(0, name.length() - ".json".length());
+        }
+        return jsonFile.resolveSibling(name + DIRECTORY_SUFFIX);
+    }
+
+    /**
+     * Appends an engine dependent test to its shard.
+     *
+     * @param engineId  of the test
+     * @param featureId of the test
+     * @param element   the test as written to the json file
+     * @throws IOException when the shard could not be written
+     */
+    public void write(String engineId, String featureId, byte[] element) throws IOException {
+        String capability = capabilities ? featureId.split("__")[0] : null;
+        String file = (capability == null ? engineId : engineId + "__" + capability) + ".json";
+        Shard shard = shards.get(file);
+        if (shard == null) {
+            shard = new Shard(engineId, capability, file, new JsonArrayWriter(tmpDirectory.resolve(file)));
+            shards.put(file, shard);
+        }
+        shard.out.writeElement(element);
+    }
+
+    /**
+     * Closes the shards, writes the index and replaces the old shard directory.
+     *
+     * @throws IOException when the shards could not be written
+     */
+    public void commit() throws IOException {
+        closeShards();
+        try (JsonArrayWriter index = new JsonArrayWriter(tmpDirectory.resolve(INDEX_NAME))) {
+            for (Shard shard : shards.values()) {
+                JSONObject entry = new JSONObject();
+                entry.put(Constants.ENGINE_ID_TOKEN, shard.engineId);
+                if (shard.capability != null) {
+                    entry.put("capability", shard.capability);
+                }
+                entry.put("file", shard.file);
+                entry.put("tests", shard.out.count());
+                Path file = tmpDirectory.resolve(shard.file);
+                entry.put("bytes", Files.size(file));
+                if (Files.exists(GzipSidecar.of(file))) {
+                    entry.put("compressedBytes", Files.size(GzipSidecar.of(file)));
+                }
+                index.write(entry);
+            }
+        }
+        delete(directory);
+        Files.move(tmpDirectory, directory, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+        System.out.println("Wrote " + shards.size() + " shards to " + directory);
+    }
+
+    /**
+     * Closes the shards. The shards are discarded if they were not committed.
+     *
+     * @throws IOException when the shards could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            closeShards();
+            delete(tmpDirectory);
+        }
+    }
+
+    private void closeShards() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        IOException failure = null;
+        for (Shard shard : shards.values()) {
+            try {
+                shard.out.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Deletes a shard directory, it contains no sub directories.
+     *
+     * @param dir to be deleted
+     * @throws IOException when the directory could not be deleted
+     */
+    private static void delete(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,399 @@
+package convert;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Merges files directories into one target directory, e.g. the files directories of the runs of a docker run into
+ * the files directory of its root. Several sources may be merged at the same time.<br>
+ * Every directory of the target is listed once and the listing is cached, so the existence of a target file costs
+ * no stat. The directories are created in one pass before the files are copied on the {@link IoExecutor}. A file
+ * is copied if it is missing in the target or changed: its size or modification time differs and so does its
+ * content. When several sources contain the same file, the source whose name comes first wins, also over the
+ * sources of earlier merges of the same merger. Only the name of the winning source is kept per file, the sources
+ * are compared on demand and files with a different content are reported as conflicts. Archives of the
+ * {@link ArchiveLayout} are appended entry by entry, the entries are compared by their size.
+ */
+public class DirectoryMerger {
+
+    /**
+     * the directory merged into.
+     */
+    private final Path targetDir;
+
+    /**
+     * cached names of the entries of the directories of the target, as they were before the merge.
+     */
+    private final Map<Path, Set<String>> listings = new ConcurrentHashMap<>();
+
+    /**
+     * the name of the winning source of every file of the target written by the merge. Only the name is kept, the
+     * merger may live as long as a watch of a docker run.
+     */
+    private final Map<Path, String> claims = new ConcurrentHashMap<>();
+
+    /**
+     * the directories of the sources by their name.
+     */
+    private final Map<String, Path> sources = new ConcurrentHashMap<>();
+
+    /**
+     * archive entries of the target written by the merge, guarded by {@link #targetLock}.
+     */
+    private final Set<Path> written = new HashSet<>();
+
+    /**
+     * guards the writes to the target. A lock instead of a monitor, the writes to archives must not pin the
+     * virtual threads of the {@link IoExecutor}.
+     */
+    private final ReentrantLock targetLock = new ReentrantLock();
+
+    /**
+     * the reported conflicts.
+     */
+    private final List<String> conflicts = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Constructor.
+     *
+     * @param targetDir the directory to merge into, created if necessary
+     */
+    public DirectoryMerger(Path targetDir) {
+        this.targetDir = targetDir.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Merges a directory into the target.
+     *
+     * @param sourceDir directory to be merged
+     * @param name      of the source, the source whose name comes first wins a conflict. Used to name the partial
+     *                  copies
+     * @param excluded  files of the source that are not merged, relative to the source with / as separator. Entries
+     *                  of archives are given as &lt;archive&gt;!/&lt;entry&gt;, e.g. engine0.zip!/logs/engine0/1/log0.txt
+     * @throws IOException when the source could not be listed or a directory could not be created
+     */
+    public void merge(Path sourceDir, String name, Set<String> excluded) throws IOException {
+        Path source = sourceDir.toAbsolutePath().normalize();
+        sources.put(name, source);
+        List<Path> directories = new ArrayList<>();
+        Map<Path, BasicFileAttributes> files = new ConcurrentHashMap<>();
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                directories.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.put(file, attrs);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        //parents are visited before their children
+        for (Path dir : directories) {
+            createDirectory(target(dir, source));
+        }
+        IoExecutor.forEach(files.keySet(), path -> {
+            try {
+                Path target = target(path, source);
+                if (path.getFileName().toString().equals(ArchiveStore.INDEX_NAME)) {
+                    //rewritten when the archives of the target are written
+                    return;
+                }
+                if (source.equals(path.getParent()) && path.getFileName().toString().endsWith(".zip")) {
+                    //archives lie directly in the files directory, test files with the .zip extension lie below
+                    appendArchive(path, target, name, excluded);
+                } else if (!excluded.contains(relative(source.relativize(path)))) {
+                    copyFile(name, path, files.get(path), target);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Releases the files a source has claimed in an earlier merge, so that other sources can write them.
+     *
+     * @param name  of the source
+     * @param files to be released, relative to the source as in {@link #merge(Path, String, Set)}
+     */
+    public void release(String name, Set<String> files) {
+        String separator = targetDir.getFileSystem().getSeparator();
+        for (String file : files) {
+            Path target = targetDir.getFileSystem().getPath(targetDir + separator + file.replace("/", separator));
+            claims.computeIfPresent(target, (key, claim) -> claim.equals(name) ? null : claim);
+        }
+    }
+
+    /**
+     * @return the conflicts found since the last call, a description per file
+     */
+    public List<String> takeConflicts() {
+        synchronized (conflicts) {
+            List<String> taken = new ArrayList<>(conflicts);
+            conflicts.clear();
+            return taken;
+        }
+    }
+
+    /**
+     * Creates a directory of the target unless the cached listing of its parent contains it.
+     *
+     * @param dir to be created
+     * @throws IOException when the directory could not be created
+     */
+    private void createDirectory(Path dir) throws IOException {
+        if (dir.equals(targetDir)) {
+            Files.createDirectories(dir);
+            listing(dir);
+            return;
+        }
+        Set<String> parent = listing(dir.getParent());
+        if (parent.contains(dir.getFileName().toString())) {
+            listing(dir);
+            return;
+        }
+        try {
+            Files.createDirectory(dir);
+            //a directory created by the merge is empty
+            listings.putIfAbsent(dir, ConcurrentHashMap.newKeySet());
+        } catch (FileAlreadyExistsException e) {
+            //created by a source merged at the same time
+            listing(dir);
+        }
+    }
+
+    /**
+     * @param dir of the target
+     * @return the cached names of the entries of the directory, listed on the first call
+     */
+    private Set<String> listing(Path dir) {
+        return listings.computeIfAbsent(dir, d -> {
+            Set<String> names = ConcurrentHashMap.newKeySet();
+            if (Files.isDirectory(d)) {
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(d)) {
+                    entries.forEach(entry -> names.add(entry.getFileName().toString()));
+                } catch (IOException e) {
+                    System.err.println("Could not list directory: " + d);
+                    System.err.println("Reason: " + e.getMessage());
+                }
+            }
+            return names;
+        });
+    }
+
+    /**
+     * Copies a file to the target if its source wins and the target is missing or changed.
+     *
+     * @param name       of the source
+     * @param source     file to be copied
+     * @param attributes of the source
+     * @param target     file of the target
+     * @throws IOException when the file could not be copied
+     */
+    private void copyFile(String name, Path source, BasicFileAttributes attributes, Path target) throws IOException {
+        String loser = claim(name, target);
+        if (name.equals(loser)) {
+            String winner = claims.get(target);
+            if (differ(source, attributes.size(), sourceOf(winner, target))) {
+                conflict(target, winner, loser);
+            }
+            return;
+        }
+        if (loser != null && differ(source, attributes.size(), sourceOf(loser, target))) {
+            conflict(target, name, loser);
+        }
+        if (listing(target.getParent()).contains(target.getFileName().toString())
+                && !changed(source, attributes, target)) {
+            return;
+        }
+        //an interrupted copy must not leave a partial file, it would be skipped on resume
+        Path part = target.resolveSibling(target.getFileName() + "." + name + ".part");
+        FileCopier.copy(source, part);
+        try {
+            Files.setLastModifiedTime(part, attributes.lastModifiedTime());
+        } catch (IOException e) {
+            //links to sources that may not be written, the contents are compared instead
+        }
+        targetLock.lock();
+        try {
+            if (name.equals(claims.get(target))) {
+                Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            targetLock.unlock();
+        }
+        Files.deleteIfExists(part);
+    }
+
+    /**
+     * Claims a file of the target for a source.
+     *
+     * @param name   of the source
+     * @param target file of the target
+     * @return the name of the source that lost the file to the other, the name itself if the file is claimed by a
+     * source whose name comes first, null if the file was not claimed by another source
+     */
+    private String claim(String name, Path target) {
+        String[] loser = new String[1];
+        claims.compute(target, (key, current) -> {
+            //a source merged again replaces its own claim
+            if (current == null || name.compareTo(current) <= 0) {
+                loser[0] = current == null || current.equals(name) ? null : current;
+                return name;
+            }
+            loser[0] = name;
+            return current;
+        });
+        return loser[0];
+    }
+
+    /**
+     * @param name   of a source
+     * @param target file of the target
+     * @return the file of the target in the source, null if the source is not known
+     */
+    private Path sourceOf(String name, Path target) {
+        Path sourceDir = name == null ? null : sources.get(name);
+        return sourceDir == null ? null : sourceDir.resolve(targetDir.relativize(target).toString());
+    }
+
+    /**
+     * Reports a file of the target whose sources differ.
+     *
+     * @param target file of the target
+     * @param winner name of the source that is kept
+     * @param loser  name of the source that differs
+     */
+    private void conflict(Path target, String winner, String loser) {
+        conflicts.add(target + ": " + sourceOf(winner, target) + " is kept, " + sourceOf(loser, target) + " differs");
+    }
+
+    /**
+     * Reports an entry of an archive of the target whose sources differ in size.
+     *
+     * @param targetEntry entry of the target
+     * @param target      archive of the target
+     * @param entry       path of the entry in the archives
+     * @param winner      name of the source that is kept
+     * @param loser       name of the source that differs
+     */
+    private void conflict(Path targetEntry, Path target, Path entry, String winner, String loser) {
+        conflicts.add(targetEntry + ": " + sourceOf(winner, target) + "!" + entry + " is kept, "
+                + sourceOf(loser, target) + "!" + entry + " differs");
+    }
+
+    /**
+     * @param source file of a source
+     * @param size   of the file
+     * @param other  file of another source of the same target, null if not known
+     * @return true if the contents of the sources differ
+     * @throws IOException when the sources could not be read
+     */
+    private static boolean differ(Path source, long size, Path other) throws IOException {
+        if (other == null || !Files.exists(other)) {
+            return false;
+        }
+        return Files.size(other) != size || Files.mismatch(source, other) != -1;
+    }
+
+    /**
+     * @param source     file of the source
+     * @param attributes of the source
+     * @param target     existing file of the target
+     * @return true if the target differs from the source
+     * @throws IOException when the files could not be read
+     */
+    private static boolean changed(Path source, BasicFileAttributes attributes, Path target) throws IOException {
+        BasicFileAttributes targetAttributes = Files.readAttributes(target, BasicFileAttributes.class);
+        if (targetAttributes.size() != attributes.size()) {
+            return true;
+        }
+        if (targetAttributes.lastModifiedTime().equals(attributes.lastModifiedTime())) {
+            return false;
+        }
+        return Files.mismatch(source, target) != -1;
+    }
+
+    /**
+     * Appends the entries of an archive that are missing or have a different size in the target archive.
+     *
+     * @param archive  to be copied
+     * @param target   archive to append to, created if necessary
+     * @param name     of the source
+     * @param excluded files of the source that are not merged
+     * @throws IOException when an archive could not be read or written
+     */
+    private void appendArchive(Path archive, Path target, String name, Set<String> excluded) throws IOException {
+        try (FileSystem source = FileSystems.newFileSystem(archive);
+             Stream<Path> entries = Files.walk(source.getPath("/"))) {
+            for (Path entry : (Iterable<Path>) entries.filter(Files::isRegularFile)::iterator) {
+                if (excluded.contains(archive.getFileName() + "!" + entry)) {
+                    continue;
+                }
+                Path targetEntry = target.getFileSystem()
+                        .getPath(target + "!" + entry.toString().replace("/", target.getFileSystem().getSeparator()));
+                long size = Files.size(entry);
+                //claimed and written under the lock, the entry of the target is the one of the current claim
+                targetLock.lock();
+                try {
+                    String loser = claim(name, targetEntry);
+                    Path existing = ArchiveStore.resolve(targetEntry);
+                    boolean exists = Files.exists(existing);
+                    if (name.equals(loser)) {
+                        if (exists && Files.size(existing) != size) {
+                            conflict(targetEntry, target, entry, claims.get(targetEntry), name);
+                        }
+                        continue;
+                    }
+                    if (loser != null && written.contains(targetEntry) && Files.size(existing) != size) {
+                        conflict(targetEntry, target, entry, name, loser);
+                    }
+                    if (written.contains(targetEntry) || !exists || Files.size(existing) != size) {
+                        ArchiveStore.copy(entry, targetEntry);
+                        written.add(targetEntry);
+                    }
+                } finally {
+                    targetLock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param path relative path
+     * @return the path with / as separator
+     */
+    private static String relative(Path path) {
+        return path.toString().replace(path.getFileSystem().getSeparator(), "/");
+    }
+
+    /**
+     * @param path      in the source
+     * @param sourceDir the source
+     * @return the path in the target
+     */
+    private Path target(Path path, Path sourceDir) {
+        return targetDir.resolve(sourceDir.relativize(path).toString());
+    }
+}
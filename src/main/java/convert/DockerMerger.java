@@ -1,18 +1,47 @@
 package convert;
 
-import org.json.JSONArray;
+import org.json.JSONObject;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * Merges an docker run.
+ * Merges an docker run.<br>
+ * The run folders are converted and their files are copied to the root by a pool of {@link #setParallelism(int)}
+ * threads. The converted runs are appended to the root json in the order of their folder names, so the output
+ * does not depend on the order in which the runs complete. The tests of a run are streamed to the root json as soon
+ * as the run and the runs before it are converted, they are never held in memory together. The files are merged
+ * by a {@link DirectoryMerger}: when several runs contain the same file, the run first in this order wins and
+ * files with different contents are reported.<br>
+ * The tests are deduplicated by their (featureID, engineID) key, see {@link #index(List, List)}. Only the newest
+ * test of a key is written to the root json, the files of the older tests are not copied to the root.
  */
 public class DockerMerger {
 
@@ -21,6 +50,27 @@ public class DockerMerger {
      */
     private static String TEST_DEPENDENT_PATH = File.separator + "test" + File.separator + "tests-engine-dependent.json";
 
+    /**
+     * name of the test-engine-dependent.json.
+     */
+    private static final String TEST_DEPENDENT_NAME = "tests-engine-dependent.json";
+
+    /**
+     * milliseconds the json of a run has to be unchanged before the run is merged by {@link #watch()}.
+     */
+    private static final long QUIET_PERIOD = 2000;
+
+    /**
+     * name of the journal of the converted runs in the root directory. A run is journaled when its files are
+     * copied to the root, so that an interrupted merge does not convert and copy it again.
+     */
+    private static final String JOURNAL_NAME = "mergeDocker.journal";
+
+    /**
+     * maximum number of run folders converted concurrently.
+     */
+    private static volatile int parallelism = Math.min(4, Runtime.getRuntime().availableProcessors());
+
     /**
      * root path of the docker run.
      */
@@ -30,6 +80,16 @@ public class DockerMerger {
      */
     private final List<String> skipped = new ArrayList<>();
 
+    /**
+     * the newest test of every key of the runs read so far, kept across the updates of a watch.
+     */
+    private final Map<TestKey, Newest> newest = new HashMap<>();
+
+    /**
+     * the runs whose tests are in the root json written by the last update.
+     */
+    private final Set<String> written = new HashSet<>();
+
     /**
      * Constructor.
      *
@@ -39,41 +99,34 @@ public class DockerMerger {
         rootPath = Paths.get(root);
     }
 
+    /**
+     * @param parallelism maximum number of run folders converted concurrently
+     */
+    public static void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism has to be at least 1: " + parallelism);
+        }
+        DockerMerger.parallelism = parallelism;
+    }
+
     /**
      * Merges the docker run.
      */
     public void merge() {
         try {
-            List<Path> testFolders = Files.list(rootPath).filter(p -> p.toFile().isDirectory())
-                    .collect(Collectors.toList());
-
-            List<Path> testJsonPaths = testFolders.stream().map(p -> Paths.get(p.toString() + TEST_DEPENDENT_PATH))
-                    .filter(p -> {
-                        boolean result = p.toFile().exists();
-                        if (!result) {
-                            skipped.add(p.toString().substring(0, p.toString().lastIndexOf(File.separator)));
-                        }
-                        return result;
-                    })
-                    .collect(Collectors.toList());
-
-            int counter = 1;
-            Path targetFileDir = Paths.get(rootPath.toString() + File.separator + "files");
-
-            JSONArray outputArray = new JSONArray();
-            for (Path p : testJsonPaths) {
-                System.out.println("MERGING " + counter + " of " + testJsonPaths.size());
-                counter++;
-                new PathConverter(p.toString(), true).convert();
-                copyDirectory(Paths.get(p.toFile().getParent() + File.separator + "files"), targetFileDir);
-                System.out.println("Reading: ");
-                JSONArray arr = new JSONArray(readLines(p.toString()));
-                for (int i = 0; i < arr.length(); i++) {
-                    outputArray.put(arr.getJSONObject(i));
+            Set<String> completed = readJournal();
+            if (!completed.isEmpty()) {
+                System.out.println("Resuming, " + completed.size() + " runs are already converted.");
+            }
+            if (!update(completed, Collections.emptySet(), new DirectoryMerger(rootPath.resolve("files")))) {
+                if (!Thread.currentThread().isInterrupted()) {
+                    System.err.println("Could not merge all runs, the journal is kept.");
+                    System.err.println("Reason: the runs above could not be converted, run mergeDocker again to retry "
+                            + "them.");
                 }
+                return;
             }
-            Path rootJson = Paths.get(rootPath.toString() + File.separator + "tests-engine-dependent.json");
-            Files.write(rootJson, outputArray.toString(1).getBytes());
+            Files.delete(rootPath.resolve(JOURNAL_NAME));
             System.out.println("Skipped because no tests-engine-dependent.json exists:");
             skipped.forEach(System.out::println);
         } catch (IOException e) {
@@ -82,45 +135,556 @@ public class DockerMerger {
     }
 
     /**
-     * Reads the file as a line.
-     *
-     * @param filePath to be read
-     * @return the contents of the file, or '[]' in case of an error.
+     * Watches the docker run and merges every run folder as soon as its tests-engine-dependent.json is written.
+     * The runs completed before are merged first. A run is merged once its json has not changed for
+     * {@link #QUIET_PERIOD} milliseconds, the root json is rewritten after every merge. The converted runs stay
+     * journaled, so a watch can be stopped and continued with watchDocker or mergeDocker later.
      */
-    private String readLines(String filePath) {
-        String line = "";
-        try {
-            line = Files.readAllLines(Paths.get(filePath)).stream().reduce((s1, s2) -> s1 + s2).orElse("");
+    public void watch() {
+        try (WatchService watcher = rootPath.getFileSystem().newWatchService()) {
+            Set<String> completed = readJournal();
+            //runs whose json is being written, with the time of its last change
+            Map<String, Long> busy = new HashMap<>();
+            register(watcher, rootPath, completed, busy);
+            try (Stream<Path> folders = Files.list(rootPath)) {
+                for (Path folder : (Iterable<Path>) folders::iterator) {
+                    registerRun(watcher, folder, completed, busy);
+                }
+            }
+            //runs written before the watch started are merged once their json is quiet, like the runs written later
+            busy.values().removeIf(changed -> changed <= System.currentTimeMillis() - QUIET_PERIOD);
+            //kept for the whole watch, so that the run first in the order of the names keeps winning the conflicts
+            DirectoryMerger files = new DirectoryMerger(rootPath.resolve("files"));
+            //a run that could not be converted is tried again by the next update
+            if (!update(completed, busy.keySet(), files) && Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            System.out.println("Watching " + rootPath + " for completed runs, stop with Ctrl+C.");
+            while (true) {
+                WatchKey key = watcher.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Path dir = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            //events were lost, every run not yet converted is checked again
+                            try (Stream<Path> folders = Files.list(rootPath)) {
+                                for (Path folder : (Iterable<Path>) folders::iterator) {
+                                    registerRun(watcher, folder, completed, busy);
+                                }
+                            }
+                            continue;
+                        }
+                        Path child = dir.resolve((Path) event.context());
+                        if (dir.equals(rootPath)) {
+                            registerRun(watcher, child, completed, busy);
+                        } else if (dir.getParent().equals(rootPath)) {
+                            if (child.getFileName().toString().equals("test")) {
+                                register(watcher, child, completed, busy);
+                            }
+                        } else if (child.getFileName().toString().equals(TEST_DEPENDENT_NAME)) {
+                            changed(child, System.currentTimeMillis(), completed, busy);
+                        }
+                    }
+                    if (!key.reset() && dir.equals(rootPath)) {
+                        System.err.println("Could not watch " + rootPath + " any longer.");
+                        return;
+                    }
+                }
+                long quiet = System.currentTimeMillis() - QUIET_PERIOD;
+                if (busy.values().removeIf(changed -> changed <= quiet) && !update(completed, busy.keySet(), files)
+                        && Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return line;
     }
 
     /**
-     * Copies the files directory of the docker test to the root
+     * Registers a run folder and its test folder at the watch service.
      *
-     * @param sourceDir of the files directory
-     * @param targetDir directory to copy to
+     * @param watcher the watch service
+     * @param folder    a folder of the root
+     * @param completed the converted runs
+     * @param busy      runs whose json is being written, the run is added if its json exists
+     * @throws IOException when the folder could not be registered
      */
-    private void copyDirectory(Path sourceDir, Path targetDir) {
-        try {
-            Files.walk(sourceDir).forEach(path -> {
-
-                try {
-                    Path target = Paths.get(path.toString().replace(
-                            sourceDir.toString(),
-                            targetDir.toString()));
-                    if (!target.toFile().exists()) {
-                        Files.copy(path, target);
+    private void registerRun(WatchService watcher, Path folder, Set<String> completed, Map<String, Long> busy)
+            throws IOException {
+        if (!Files.isDirectory(folder) || folder.getFileName().toString().equals("files")) {
+            return;
+        }
+        register(watcher, folder, completed, busy);
+        register(watcher, folder.resolve("test"), completed, busy);
+    }
+
+    /**
+     * Registers a folder at the watch service. A json written before the folder was registered is marked busy since
+     * its last modification.
+     *
+     * @param watcher   the watch service
+     * @param folder    the root, a run folder or its test folder
+     * @param completed the converted runs
+     * @param busy      runs whose json is being written
+     * @throws IOException when the folder could not be registered
+     */
+    private void register(WatchService watcher, Path folder, Set<String> completed, Map<String, Long> busy)
+            throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        folder.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Path json = folder.resolve(TEST_DEPENDENT_NAME);
+        if (!folder.equals(rootPath) && Files.exists(json)) {
+            changed(json, Files.getLastModifiedTime(json).toMillis(), completed, busy);
+        }
+    }
+
+    /**
+     * Marks the run of a changed json busy, unless the run is converted. The conversion itself rewrites the json.
+     *
+     * @param json      the tests-engine-dependent.json of a run
+     * @param time      of the change in milliseconds
+     * @param completed the converted runs
+     * @param busy      runs whose json is being written
+     */
+    private void changed(Path json, long time, Set<String> completed, Map<String, Long> busy) {
+        String run = rootPath.relativize(json).getName(0).toString();
+        //events of a renamed folder arrive with its old name
+        if (!completed.contains(run) && Files.exists(json)) {
+            busy.merge(run, time, Math::max);
+        }
+    }
+
+    /**
+     * @return the runs journaled as converted
+     * @throws IOException when the journal could not be read
+     */
+    private Set<String> readJournal() throws IOException {
+        Path journalPath = rootPath.resolve(JOURNAL_NAME);
+        Set<String> completed = new HashSet<>();
+        if (Files.exists(journalPath)) {
+            completed.addAll(Files.readAllLines(journalPath, StandardCharsets.UTF_8));
+        }
+        return completed;
+    }
+
+    /**
+     * Converts the runs that are not converted yet and writes the root json. The first update writes the root json
+     * from all runs. The later updates of a watch only read the runs added since, the tests of the runs written
+     * before are taken from the previous root json. The added tests are inserted in the order of the run names and
+     * the tests they replace are left out, so the root json is the same as if it were written from all runs.
+     *
+     * @param completed the converted runs, the runs converted by the update are added
+     * @param busy      runs whose json is being written, they are left out
+     * @param files     merger of the files of the runs into the root
+     * @return false when the update was interrupted or a run could not be converted. The runs that could not be
+     * converted are left out of the root json and not journaled
+     * @throws IOException when the root could not be listed or written
+     */
+    private boolean update(Set<String> completed, Set<String> busy, DirectoryMerger files) throws IOException {
+        List<Path> testFolders;
+        try (Stream<Path> folders = Files.list(rootPath)) {
+            testFolders = folders.filter(p -> p.toFile().isDirectory()).sorted().collect(Collectors.toList());
+        }
+
+        skipped.clear();
+        List<Path> testJsonPaths = testFolders.stream().map(p -> Paths.get(p.toString() + TEST_DEPENDENT_PATH))
+                .filter(p -> {
+                    boolean result = p.toFile().exists();
+                    if (!result) {
+                        skipped.add(p.toString().substring(0, p.toString().lastIndexOf(File.separator)));
+                    }
+                    return result;
+                })
+                .filter(p -> !busy.contains(rootPath.relativize(p).getName(0).toString()))
+                .collect(Collectors.toList());
+        List<String> runs = testJsonPaths.stream().map(p -> rootPath.relativize(p).getName(0).toString())
+                .collect(Collectors.toList());
+
+        Path targetFileDir = Paths.get(rootPath.toString() + File.separator + "files");
+        Path journalPath = rootPath.resolve(JOURNAL_NAME);
+        Path rootJson = Paths.get(rootPath.toString() + File.separator + "tests-engine-dependent.json");
+        //the root json of a previous merge is kept until this merge is complete
+        Path partJson = rootJson.resolveSibling(rootJson.getFileName() + ".part");
+        //the root json is written from all runs again if a written run is gone
+        boolean incremental = !written.isEmpty() && runs.containsAll(written) && Files.exists(rootJson);
+        if (!incremental) {
+            newest.clear();
+            written.clear();
+        }
+        List<Path> addedPaths = new ArrayList<>();
+        List<String> added = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i++) {
+            if (!written.contains(runs.get(i))) {
+                addedPaths.add(testJsonPaths.get(i));
+                added.add(runs.get(i));
+            }
+        }
+        if (incremental && added.isEmpty()) {
+            return true;
+        }
+        try (BufferedWriter journal = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+             DatasetShards shards = DatasetShards.open(rootJson)) {
+            Map<TestKey, Newest> replaced = index(addedPaths, added);
+            //files of older duplicates in runs merged before
+            for (int i = 0; i < addedPaths.size(); i++) {
+                if (completed.contains(added.get(i))) {
+                    files.release(added.get(i), replacedFiles(addedPaths.get(i), added.get(i), newest));
+                }
+            }
+            if (!replaced.isEmpty()) {
+                releaseReplaced(rootJson, replaced, files);
+            }
+            int toConvert = (int) added.stream().filter(run -> !completed.contains(run)).count();
+            AtomicInteger converted = new AtomicInteger();
+            //with archives, a run is only journaled once the archives of the root are written
+            boolean archived = FileLayout.get() instanceof ArchiveLayout;
+            List<String> unwritten = Collections.synchronizedList(new ArrayList<>());
+            Set<String> failed = Collections.synchronizedSet(new HashSet<>());
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, toConvert)));
+            List<Future<?>> conversions = new ArrayList<>();
+            for (int i = 0; i < addedPaths.size(); i++) {
+                Path p = addedPaths.get(i);
+                String run = added.get(i);
+                if (completed.contains(run)) {
+                    conversions.add(null);
+                    continue;
+                }
+                conversions.add(executor.submit(() -> {
+                    if (!new PathConverter(p.toString(), true).convert()) {
+                        //not journaled, the run is converted again by the next merge
+                        throw new IOException("The json file of the run was not converted: " + p);
+                    }
+                    files.merge(Paths.get(p.toFile().getParent() + File.separator + "files"), run,
+                            replacedFiles(p, run, newest));
+                    if (archived) {
+                        unwritten.add(run);
+                    } else {
+                        journal(journal, run);
+                    }
+                    System.out.println("CONVERTED " + run + ", " + converted.incrementAndGet() + " of "
+                            + toConvert);
+                    return null;
+                }));
+            }
+            executor.shutdown();
+            Map<String, Integer> order = new HashMap<>();
+            runs.forEach(run -> order.put(run, order.size()));
+            try (JsonArrayWriter out = new JsonArrayWriter(partJson);
+                 JsonArrayReader previous = incremental ? new JsonArrayReader(rootJson) : null) {
+                JSONObject kept = nextKept(previous);
+                int next = 0;
+                while (next < added.size() || kept != null) {
+                    if (kept != null && (next == added.size() || order.get(newest.get(
+                            TestKey.ofEngineDependent(kept)).run) < order.get(added.get(next)))) {
+                        write(kept, out, shards);
+                        kept = nextKept(previous);
+                        continue;
+                    }
+                    if (!await(conversions.get(next), added.get(next), failed)) {
+                        executor.shutdownNow();
+                        return false;
+                    }
+                    //the json of a failed run may still have its old paths
+                    if (!failed.contains(added.get(next))) {
+                        System.out.println("MERGING " + (next + 1) + " of " + added.size());
+                        appendRun(addedPaths.get(next), added.get(next), newest, out, shards);
+                    }
+                    next++;
+                }
+                System.out.println("Wrote " + out.count() + " tests, older duplicates are left out.");
+            }
+            ArchiveStore.close(targetFileDir);
+            for (String run : unwritten) {
+                journal(journal, run);
+            }
+            completed.addAll(readJournal());
+            JsonArrayWriter.move(partJson, rootJson, StandardCopyOption.REPLACE_EXISTING);
+            if (shards != null) {
+                shards.commit();
+            }
+            //a run that could not be converted is read again by the next update
+            added.stream().filter(run -> !failed.contains(run)).forEach(written::add);
+            List<String> conflicts = files.takeConflicts();
+            if (!conflicts.isEmpty()) {
+                System.out.println("Conflicting files, the file of the first run is kept:");
+                conflicts.forEach(System.out::println);
+            }
+            return failed.isEmpty();
+        }
+    }
+
+    /**
+     * Indexes the tests of the added runs by their (featureID, engineID) key into {@link #newest}. Of the tests of a
+     * key, the newest wins: the test with the newer executionTimestamp, or, if one of them has none or both are
+     * equal, the test of the run folder modified last. Tests of equally old run folders are won by the run later in
+     * the order of the names.
+     *
+     * @param testJsonPaths the json files of the added runs
+     * @param runs          names of the added run folders
+     * @return the tests of the runs written before that are replaced by a test of an added run, by their key
+     * @throws IOException when a json file could not be read
+     */
+    private Map<TestKey, Newest> index(List<Path> testJsonPaths, List<String> runs) throws IOException {
+        Map<TestKey, Newest> replaced = new HashMap<>();
+        int duplicates = 0;
+        for (int i = 0; i < testJsonPaths.size(); i++) {
+            long modified = Files.getLastModifiedTime(rootPath.resolve(runs.get(i))).toMillis();
+            try (JsonArrayReader in = new JsonArrayReader(testJsonPaths.get(i))) {
+                JSONObject test;
+                int position = 0;
+                while ((test = in.next()) != null) {
+                    TestKey key = TestKey.ofEngineDependent(test);
+                    Newest candidate = new Newest(runs.get(i), position++, modified,
+                            test.optLong(Constants.EXECUTION_TIMESTAMP_TOKEN, Test.NO_TIMESTAMP));
+                    Newest current = newest.putIfAbsent(key, candidate);
+                    if (current != null && !current.is(candidate.run, candidate.position)) {
+                        duplicates++;
+                        if (candidate.isNewerThan(current)) {
+                            newest.put(key, candidate);
+                            if (written.contains(current.run)) {
+                                replaced.putIfAbsent(key, current);
+                            }
+                        }
                     }
-                } catch (Exception e) {
-                    e.printStackTrace();
                 }
+            }
+        }
+        if (duplicates > 0) {
+            System.out.println(duplicates + " tests are replaced by a newer test of the same feature and engine.");
+        }
+        return replaced;
+    }
+
+    /**
+     * Releases the files of the tests of the runs written before that are replaced by a test of an added run,
+     * unless a test of the same run that is kept references them too. The files are read from the previous root
+     * json, which contains exactly the tests of the runs written before.
+     *
+     * @param rootJson the previous root json
+     * @param replaced the replaced tests by their key
+     * @param files    merger of the files of the runs into the root
+     * @throws IOException when the root json could not be read
+     */
+    private void releaseReplaced(Path rootJson, Map<TestKey, Newest> replaced, DirectoryMerger files)
+            throws IOException {
+        Set<String> runs = replaced.values().stream().map(n -> n.run).collect(Collectors.toSet());
+        Map<String, Set<String>> replacedFiles = new HashMap<>();
+        Map<String, Set<String>> keptFiles = new HashMap<>();
+        JsonArrayReader.forEach(rootJson.toString(), obj -> {
+            Test test = ModelCodec.decodeTest(obj);
+            Newest old = replaced.get(test.key());
+            if (old != null) {
+                addFiles(test, replacedFiles.computeIfAbsent(old.run, run -> new HashSet<>()));
+            } else if (runs.contains(newest.get(test.key()).run)) {
+                addFiles(test, keptFiles.computeIfAbsent(newest.get(test.key()).run, run -> new HashSet<>()));
+            }
+        });
+        replacedFiles.forEach((run, paths) -> {
+            paths.removeAll(keptFiles.getOrDefault(run, Collections.emptySet()));
+            files.release(run, paths);
+        });
+    }
+
+    /**
+     * Collects the files of the tests of a run that are replaced by a newer test, unless a newest test of the run
+     * references them too.
+     *
+     * @param runJson the converted json of the run
+     * @param run     name of the run
+     * @param newest  the newest test of every key
+     * @return the paths of the files relative to the files directory of the run, with / as separator
+     * @throws IOException when the json file could not be read
+     */
+    private static Set<String> replacedFiles(Path runJson, String run, Map<TestKey, Newest> newest)
+            throws IOException {
+        Set<String> replaced = new HashSet<>();
+        Set<String> kept = new HashSet<>();
+        try (JsonArrayReader in = new JsonArrayReader(runJson)) {
+            JSONObject obj;
+            int position = 0;
+            while ((obj = in.next()) != null) {
+                Test test = ModelCodec.decodeTest(obj);
+                addFiles(test, newest.get(test.key()).is(run, position++) ? kept : replaced);
+            }
+        }
+        replaced.removeAll(kept);
+        return replaced;
+    }
+
+    /**
+     * @param test   of a converted json
+     * @param target the paths of the files of the test are added to, relative to the files directory
+     */
+    private static void addFiles(Test test, Set<String> target) {
+        for (FileList list : Arrays.asList(test.getEngineDependentFiles(), test.getEngineIndependentFiles(),
+                test.getLogFiles())) {
+            if (list != null) {
+                list.forEach(path -> target.add(relativeToFiles(path)));
+            }
+        }
+    }
+
+    /**
+     * @param path of a file in a converted json, e.g. files/logs/engine0/1/log0.txt
+     * @return the path relative to the files directory with / as separator, e.g. logs/engine0/1/log0.txt
+     */
+    private static String relativeToFiles(String path) {
+        String normalized = path.replace('\\', '/');
+        return normalized.startsWith("files/") ? normalized.substring("files/".length()) : normalized;
+    }
+
+    /**
+     * Reads the next test of the previous root json that is not replaced by a test of an added run.
+     *
+     * @param previous reader of the previous root json, null if the root json is written from all runs
+     * @return the test, null at the end of the root json
+     * @throws IOException when the root json could not be read
+     */
+    private JSONObject nextKept(JsonArrayReader previous) throws IOException {
+        if (previous == null) {
+            return null;
+        }
+        JSONObject test;
+        while ((test = previous.next()) != null) {
+            if (written.contains(newest.get(TestKey.ofEngineDependent(test)).run)) {
+                return test;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Streams the newest tests of a converted run to the root json.
+     *
+     * @param runJson the converted json of the run
+     * @param run     name of the run
+     * @param newest  the newest test of every key
+     * @param out     writer of the root json
+     * @param shards  of the root json, null if no shards are written
+     * @throws IOException when a json file could not be read or written
+     */
+    private static void appendRun(Path runJson, String run, Map<TestKey, Newest> newest, JsonArrayWriter out,
+                                  DatasetShards shards) throws IOException {
+        System.out.println("Reading: " + runJson);
+        try (JsonArrayReader in = new JsonArrayReader(runJson)) {
+            JSONObject test;
+            int position = 0;
+            while ((test = in.next()) != null) {
+                if (newest.get(TestKey.ofEngineDependent(test)).is(run, position++)) {
+                    write(test, out, shards);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a test to the root json and its shard.
+     *
+     * @param test   to be written
+     * @param out    writer of the root json
+     * @param shards of the root json, null if no shards are written
+     * @throws IOException when the test could not be written
+     */
+    private static void write(JSONObject test, JsonArrayWriter out, DatasetShards shards) throws IOException {
+        byte[] element = JsonArrayWriter.serialize(test);
+        out.writeElement(element);
+        if (shards != null) {
+            shards.write(test.getString(Constants.ENGINE_ID_TOKEN), test.getString(Constants.FEATURE_ID_TOKEN),
+                    element);
+        }
+    }
+
+    /**
+     * Journals a converted run.
+     *
+     * @param journal of the merge
+     * @param run     name of the run folder
+     * @throws IOException when the journal could not be written
+     */
+    private static void journal(BufferedWriter journal, String run) throws IOException {
+        synchronized (journal) {
+            journal.write(run);
+            journal.newLine();
+            journal.flush();
+        }
+    }
 
-            });
-        } catch (IOException e1) {
-            e1.printStackTrace();
+    /**
+     * Waits for the conversion of a run.
+     *
+     * @param conversion of the run, null if the run was converted before
+     * @param run        name of the run folder
+     * @param failed     the runs that could not be converted, the run is added if its conversion failed
+     * @return false when the merge was interrupted
+     */
+    private static boolean await(Future<?> conversion, String run, Set<String> failed) {
+        if (conversion == null) {
+            return true;
+        }
+        try {
+            conversion.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            System.err.println("Could not convert run: " + run);
+            e.getCause().printStackTrace();
+            failed.add(run);
+        }
+        return true;
+    }
+
+    /**
+     * Newest test of a key found by {@link #index(List, List)}.
+     */
+    private static final class Newest {
+
+        /**
+         * name of the run of the test.
+         */
+        private final String run;
+
+        /**
+         * position of the test in the json of the run.
+         */
+        private final int position;
+
+        /**
+         * last modification of the run folder in milliseconds.
+         */
+        private final long modified;
+
+        /**
+         * executionTimestamp of the test, {@link Test#NO_TIMESTAMP} if it has none.
+         */
+        private final long timestamp;
+
+        private Newest(String run, int position, long modified, long timestamp) {
+            this.run = run;
+            this.position = position;
+            this.modified = modified;
+            this.timestamp = timestamp;
+        }
+
+        private boolean is(String run, int position) {
+            return this.run.equals(run) && this.position == position;
+        }
+
+        private boolean isNewerThan(Newest other) {
+            if (timestamp != Test.NO_TIMESTAMP && other.timestamp != Test.NO_TIMESTAMP
+                    && timestamp != other.timestamp) {
+                return timestamp > other.timestamp;
+            }
+            if (modified != other.modified) {
+                return modified > other.modified;
+            }
+            return run.compareTo(other.run) >= 0;
         }
     }
 }
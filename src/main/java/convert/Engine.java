@@ -0,0 +1,40 @@
+package convert;
+
+/**
+ * Compact in-memory form of an engine of the engines.json.<br>
+ * Only the pooled id is kept as field, name, version and configuration are kept as serialized json.
+ */
+public final class Engine {
+
+    /**
+     * id of the engine.
+     */
+    private final String id;
+
+    /**
+     * all other properties as utf-8 json object, null if there are none.
+     */
+    private final byte[] payload;
+
+    /**
+     * Constructor.
+     *
+     * @param id      of the engine
+     * @param payload all other properties as utf-8 json object, null if there are none
+     */
+    Engine(String id, byte[] payload) {
+        this.id = Identifiers.intern(id);
+        this.payload = payload;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return all other properties as utf-8 json object, null if there are none
+     */
+    byte[] getPayload() {
+        return payload;
+    }
+}
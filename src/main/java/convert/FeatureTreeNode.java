@@ -0,0 +1,78 @@
+package convert;
+
+import java.util.List;
+
+/**
+ * Compact in-memory form of a node of the feature-tree.json: a capability, language, group, construct or
+ * feature.<br>
+ * The id is pooled, the children are the nodes of the next level (see {@link Constants#FEATURE_TREE_LEVELS}) and
+ * all other properties, e.g. name and description, are kept as serialized json.
+ */
+public final class FeatureTreeNode {
+
+    /**
+     * id of the node.
+     */
+    private final String id;
+
+    /**
+     * level of the node, 0 for capabilities and {@link Constants#FEATURE_TREE_LEVELS}.length for features.
+     */
+    private final int level;
+
+    /**
+     * nodes of the next level, null if the node has no children token.
+     */
+    private List<FeatureTreeNode> children;
+
+    /**
+     * all other properties as utf-8 json object, null if there are none.
+     */
+    private final byte[] payload;
+
+    /**
+     * Constructor.
+     *
+     * @param id      of the node
+     * @param level   of the node
+     * @param payload all other properties as utf-8 json object, null if there are none
+     */
+    FeatureTreeNode(String id, int level, byte[] payload) {
+        this.id = Identifiers.intern(id);
+        this.level = level;
+        this.payload = payload;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the token of the children in the json, null for features
+     */
+    public String getChildrenToken() {
+        return level < Constants.FEATURE_TREE_LEVELS.length ? Constants.FEATURE_TREE_LEVELS[level] : null;
+    }
+
+    /**
+     * @return the nodes of the next level, null if the node has no children token
+     */
+    public List<FeatureTreeNode> getChildren() {
+        return children;
+    }
+
+    public void setChildren(List<FeatureTreeNode> children) {
+        this.children = children;
+    }
+
+    /**
+     * @return all other properties as utf-8 json object, null if there are none
+     */
+    byte[] getPayload() {
+        return payload;
+    }
+}
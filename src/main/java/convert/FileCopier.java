@@ -0,0 +1,61 @@
+package convert;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Copies the test files with the {@link CopyStrategy} selected on the command line. Files in archives are copied
+ * by the {@link ArchiveStore}.
+ */
+public final class FileCopier {
+
+    /**
+     * the strategy used for all copies.
+     */
+    private static volatile CopyStrategy strategy = CopyStrategy.forName("copy");
+
+    private FileCopier() {
+    }
+
+    /**
+     * @param strategy to be used for all copies
+     */
+    public static void setStrategy(CopyStrategy strategy) {
+        FileCopier.strategy = strategy;
+    }
+
+    /**
+     * Copies the source to the target with the current strategy. An existing target is replaced, unless it is the
+     * source itself.
+     *
+     * @param source to be copied
+     * @param target to be created, its parent directory has to exist
+     * @throws IOException when the file could not be copied
+     */
+    public static void copy(Path source, Path target) throws IOException {
+        //e.g. the files of the kept tests of a merge into the directory of the older input
+        if (source.equals(target)) {
+            return;
+        }
+        if (ArchiveStore.isArchived(source) || ArchiveStore.isArchived(target)) {
+            ArchiveStore.copy(source, target);
+            return;
+        }
+        if (isSameFile(source, target)) {
+            return;
+        }
+        strategy.copy(source, target);
+    }
+
+    /**
+     * @param source to be copied
+     * @param target to be created
+     * @return true if the target exists and is the source, also through a link. Replacing it would destroy the
+     * source
+     * @throws IOException when the files could not be compared
+     */
+    static boolean isSameFile(Path source, Path target) throws IOException {
+        return source.equals(target) || Files.exists(target) && Files.isSameFile(source, target);
+    }
+}
@@ -0,0 +1,116 @@
+package convert;
+
+import java.io.File;
+
+/**
+ * Layout of the files directory created by the conversion. Selected with the command line option
+ * --layout=&lt;name&gt;.
+ * <ul>
+ * <li>legacy: {@link LegacyLayout}, files/&lt;category&gt;/[&lt;engine&gt;/]&lt;featureID hash code&gt; (default)</li>
+ * <li>sharded[:levels]: {@link ShardedLayout}, hex prefix directories of the sha-1 digest of the featureID</li>
+ * </ul>
+ * All paths are relative to the directory of the json file and use the {@link File#separator}.
+ */
+public abstract class FileLayout {
+
+    /**
+     * category of the log files of engine dependent tests.
+     */
+    public static final String LOGS = "logs";
+
+    /**
+     * category of the engine dependent files.
+     */
+    public static final String ENGINE_DEPENDENT = "engineDependent";
+
+    /**
+     * category of the engine independent files.
+     */
+    public static final String ENGINE_INDEPENDENT = "engineIndependent";
+
+    /**
+     * name of the files directory.
+     */
+    public static final String FILES = "files";
+
+    /**
+     * the layout used by all conversions and merges.
+     */
+    private static volatile FileLayout current = new LegacyLayout();
+
+    /**
+     * @return the layout used by all conversions and merges
+     */
+    public static FileLayout get() {
+        return current;
+    }
+
+    /**
+     * @param layout to be used by all conversions and merges
+     */
+    public static void set(FileLayout layout) {
+        current = layout;
+    }
+
+    /**
+     * Creates the layout with the name.
+     *
+     * @param name of the layout, e.g. legacy, sharded or sharded:3
+     * @return the layout
+     * @throws IllegalArgumentException when there is no layout with the name
+     */
+    public static FileLayout forName(String name) {
+        if (name.equals("legacy")) {
+            return new LegacyLayout();
+        } else if (name.equals("sharded")) {
+            return new ShardedLayout(ShardedLayout.DEFAULT_LEVELS);
+        } else if (name.startsWith("sharded:")) {
+            return new ShardedLayout(Integer.parseInt(name.substring("sharded:".length())));
+        }
+        throw new IllegalArgumentException("Unknown file layout: " + name);
+    }
+
+    /**
+     * Computes the directory of the files of a test.
+     *
+     * @param category  of the files, {@link #LOGS}, {@link #ENGINE_DEPENDENT} or {@link #ENGINE_INDEPENDENT}
+     * @param engineId  of the test, not used for engine independent files
+     * @param featureId of the test
+     * @return the directory, starting with files
+     */
+    public abstract String directory(String category, String engineId, String featureId);
+
+    /**
+     * Computes the path of a file of a test.
+     *
+     * @param category  of the file
+     * @param engineId  of the test, not used for engine independent files
+     * @param featureId of the test
+     * @param name      of the file
+     * @return the path of the file
+     */
+    public String path(String category, String engineId, String featureId, String name) {
+        return directory(category, engineId, featureId) + File.separator + name;
+    }
+
+    /**
+     * Moves the path of a converted file to this layout. Paths that are not in a files directory category are
+     * returned unchanged, paths inside an archive are relocated like the path of their entry.
+     *
+     * @param path      of the file in any layout
+     * @param engineId  of the test
+     * @param featureId of the test
+     * @return the path of the file in this layout
+     */
+    public String relocate(String path, String engineId, String featureId) {
+        String[] segments = ArchiveLayout.unpacked(path).replace("\\", "/").split("/");
+        if (segments.length < 3 || !segments[0].equals(FILES)) {
+            return path;
+        }
+        String category = segments[1];
+        if (!category.equals(LOGS) && !category.equals(ENGINE_DEPENDENT) && !category.equals(ENGINE_INDEPENDENT)) {
+            return path;
+        }
+        return path(category, engineId, featureId, segments[segments.length - 1]);
+    }
+}
@@ -0,0 +1,92 @@
+package convert;
+
+import org.json.JSONArray;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, array backed list of the file paths of a test.<br>
+ * Every path is split into its directory and its name, both are pooled by {@link Identifiers} while a model is read.
+ * The files of a test share their directory and the names repeat across tests, so a path costs two references
+ * instead of a string.
+ */
+public final class FileList extends AbstractList<String> {
+
+    /**
+     * the empty list.
+     */
+    public static final FileList EMPTY = new FileList(new String[0], new String[0]);
+
+    /**
+     * directories of the paths, including the trailing separator. empty for paths without directory.
+     */
+    private final String[] directories;
+
+    /**
+     * names of the paths.
+     */
+    private final String[] names;
+
+    private FileList(String[] directories, String[] names) {
+        this.directories = directories;
+        this.names = names;
+    }
+
+    /**
+     * Creates a list of the paths.
+     *
+     * @param paths of the files
+     * @return the list
+     */
+    public static FileList of(List<String> paths) {
+        if (paths.isEmpty()) {
+            return EMPTY;
+        }
+        String[] directories = new String[paths.size()];
+        String[] names = new String[paths.size()];
+        for (int i = 0; i < paths.size(); i++) {
+            String path = paths.get(i);
+            int split = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+            directories[i] = Identifiers.intern(path.substring(0, split));
+            names[i] = Identifiers.intern(path.substring(split));
+        }
+        return new FileList(directories, names);
+    }
+
+    /**
+     * Creates a list of the paths in the array.
+     *
+     * @param array of paths
+     * @return the list
+     */
+    public static FileList of(JSONArray array) {
+        String[] paths = new String[array.length()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = array.getString(i);
+        }
+        return of(Arrays.asList(paths));
+    }
+
+    @Override
+    public String get(int index) {
+        return directories[index].isEmpty() ? names[index] : directories[index] + names[index];
+    }
+
+    @Override
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return the paths as json array
+     */
+    public JSONArray toJSONArray() {
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < names.length; i++) {
+            array.put(get(i));
+        }
+        return array;
+    }
+}
@@ -0,0 +1,145 @@
+package convert;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the gzip compressed copy of a file while the file is written, e.g. tests-engine-dependent.json.gz next to
+ * tests-engine-dependent.json, so that a web server can serve it without compressing at runtime.<br>
+ * The written chunks are compressed by a thread of their own, so the compression runs in parallel with the
+ * serialization. At most {@link #QUEUED_CHUNKS} chunks wait for the compression.
+ */
+class GzipSidecar extends OutputStream {
+
+    /**
+     * suffix of the compressed file.
+     */
+    static final String SUFFIX = ".gz";
+
+    /**
+     * maximum number of chunks waiting for the compression.
+     */
+    private static final int QUEUED_CHUNKS = 16;
+
+    /**
+     * size of the buffer of the compressed file.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * marks the end of the file in the {@link #chunks}.
+     */
+    private static final byte[] END = new byte[0];
+
+    /**
+     * chunks to be compressed.
+     */
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+
+    /**
+     * thread compressing the chunks.
+     */
+    private final Thread compressor;
+
+    /**
+     * the first error of the {@link #compressor}.
+     */
+    private volatile IOException failure;
+
+    /**
+     * Constructor. Creates or truncates the compressed file.
+     *
+     * @param path of the compressed file
+     * @throws IOException when the file could not be opened
+     */
+    GzipSidecar(Path path) throws IOException {
+        OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE),
+                BUFFER_SIZE);
+        compressor = new Thread(() -> compress(out), "gzip " + path.getFileName());
+        compressor.setDaemon(true);
+        compressor.start();
+    }
+
+    /**
+     * @param path of a file
+     * @return the path of the compressed copy of the file
+     */
+    static Path of(Path path) {
+        return path.resolveSibling(path.getFileName() + SUFFIX);
+    }
+
+    private void compress(OutputStream out) {
+        try (OutputStream gzip = out) {
+            byte[] chunk;
+            while ((chunk = chunks.take()) != END) {
+                gzip.write(chunk);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Compression interrupted");
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        put(Arrays.copyOfRange(b, off, off + len));
+    }
+
+    private void put(byte[] chunk) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        try {
+            //the compressor stops taking chunks after a failure
+            while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            compressor.interrupt();
+            throw new InterruptedIOException("Compression interrupted");
+        }
+    }
+
+    /**
+     * Waits until all chunks are compressed and closes the compressed file.
+     *
+     * @throws IOException when the compressed file could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (failure == null && compressor.isAlive()) {
+            put(END);
+        }
+        try {
+            compressor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            compressor.interrupt();
+            throw new InterruptedIOException("Compression interrupted");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package convert;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pool of the identifiers and path parts of the in-memory model.<br>
+ * The same engineID, featureID or directory occurs in thousands of tests. While a model is read, every distinct
+ * value is kept once and shared by all objects of the model. The pool only exists between {@link #open()} and
+ * {@link #close()}, outside of a read the values are not pooled. The streaming merges decode one test at a time
+ * and would only fill the pool.
+ */
+final class Identifiers {
+
+    /**
+     * guards {@link #openReads}.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * the number of open reads.
+     */
+    private static int openReads;
+
+    /**
+     * the distinct values, null if no read is open.
+     */
+    private static volatile ConcurrentMap<String, String> pool;
+
+    private Identifiers() {
+    }
+
+    /**
+     * Starts a read of a model, the values are pooled until every started read is closed. Reads may be nested and
+     * run concurrently.
+     */
+    static void open() {
+        synchronized (LOCK) {
+            if (openReads++ == 0) {
+                pool = new ConcurrentHashMap<>();
+            }
+        }
+    }
+
+    /**
+     * Ends a read of a model and drops the pool when it was the last open read. The objects read keep sharing their
+     * values.
+     */
+    static void close() {
+        synchronized (LOCK) {
+            if (--openReads == 0) {
+                pool = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the pooled instance of the value.
+     *
+     * @param value to be pooled, may be null
+     * @return the instance equal to the value that is shared by the model, the value itself if no read is open
+     */
+    static String intern(String value) {
+        ConcurrentMap<String, String> current = pool;
+        if (value == null || current == null) {
+            return value;
+        }
+        String pooled = current.putIfAbsent(value, value);
+        return pooled == null ? value : pooled;
+    }
+}
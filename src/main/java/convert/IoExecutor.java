@@ -0,0 +1,97 @@
+package convert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Executor of the blocking file operations: stat, mkdir and copy.<br>
+ * Every task runs on its own virtual thread, so thousands of small copies wait for the disk without blocking
+ * platform threads or the common fork-join pool. The number of operations running at the same time is limited by
+ * the concurrency, set with the command line option --ioConcurrency=&lt;n&gt;.
+ */
+public final class IoExecutor {
+
+    /**
+     * default number of operations running at the same time.
+     */
+    public static final int DEFAULT_CONCURRENCY = 64;
+
+    /**
+     * executor starting a virtual thread per task.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * permits of the running operations.
+     */
+    private static volatile Semaphore permits = new Semaphore(DEFAULT_CONCURRENCY);
+
+    private IoExecutor() {
+    }
+
+    /**
+     * @param concurrency maximum number of operations running at the same time
+     */
+    public static void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("The I/O concurrency has to be at least 1: " + concurrency);
+        }
+        permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Submits an operation.
+     *
+     * @param task the operation
+     * @param <T>  type of the result
+     * @return the future result
+     */
+    public static <T> Future<T> submit(Callable<T> task) {
+        Semaphore taskPermits = permits;
+        return EXECUTOR.submit(() -> {
+            taskPermits.acquire();
+            try {
+                return task.call();
+            } finally {
+                taskPermits.release();
+            }
+        });
+    }
+
+    /**
+     * Runs the action for every item and waits until all actions are done. The actions handle their
+     * {@link java.io.IOException}s themselves, other exceptions are printed.
+     *
+     * @param items  to be processed
+     * @param action to be run for every item
+     * @param <T>    type of the items
+     */
+    public static <T> void forEach(Collection<T> items, Consumer<? super T> action) {
+        List<Future<?>> results = new ArrayList<>(items.size());
+        for (T item : items) {
+            results.add(submit(() -> {
+                action.accept(item);
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.forEach(r -> r.cancel(true));
+                return;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package convert;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+/**
+ * Reads a json file containing an array of objects element by element.<br>
+ * Only the current element is held in memory, so files larger than the heap can be processed.
+ */
+public class JsonArrayReader implements Closeable {
+
+    /**
+     * the underlying reader of the file.
+     */
+    private final Reader reader;
+
+    /**
+     * tokenizer reading from the {@link #reader}.
+     */
+    private final JSONTokener tokener;
+
+    /**
+     * true when the opening bracket has been read.
+     */
+    private boolean started;
+
+    /**
+     * true when the closing bracket or the end of the file has been read.
+     */
+    private boolean finished;
+
+    /**
+     * number of elements read so far.
+     */
+    private int count;
+
+    /**
+     * Constructor.
+     *
+     * @param path of the json file to be read
+     * @throws IOException when the file could not be opened
+     */
+    public JsonArrayReader(Path path) throws IOException {
+        this.reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        this.tokener = new JSONTokener(reader);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param path of the json file to be read
+     * @throws IOException when the file could not be opened
+     */
+    public JsonArrayReader(String path) throws IOException {
+        this(Paths.get(path));
+    }
+
+    /**
+     * Reads the next element of the array.
+     *
+     * @return the next element, or null when the end of the array is reached
+     */
+    public JSONObject next() {
+        if (finished) {
+            return null;
+        }
+        char c = tokener.nextClean();
+        if (!started) {
+            if (c == 0) {
+                //empty file
+                finished = true;
+                return null;
+            }
+            if (c != '[') {
+                throw tokener.syntaxError("A JSONArray text must start with '['");
+            }
+            started = true;
+            c = tokener.nextClean();
+            if (c == ']') {
+                finished = true;
+                return null;
+            }
+            tokener.back();
+        } else if (c == ']' || c == 0) {
+            finished = true;
+            return null;
+        } else if (c != ',') {
+            throw tokener.syntaxError("Expected a ',' or ']'");
+        }
+        Object value = tokener.nextValue();
+        if (!(value instanceof JSONObject)) {
+            throw tokener.syntaxError("Expected a JSONObject as array element");
+        }
+        count++;
+        return (JSONObject) value;
+    }
+
+    /**
+     * @return the number of elements read so far
+     */
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Passes every element of the json file to the consumer.
+     *
+     * @param filePath to be read
+     * @param consumer of the elements
+     * @return the number of elements read
+     * @throws IOException when the file could not be read
+     */
+    public static int forEach(String filePath, Consumer<JSONObject> consumer) throws IOException {
+        try (JsonArrayReader in = new JsonArrayReader(filePath)) {
+            JSONObject obj;
+            while ((obj = in.next()) != null) {
+                consumer.accept(obj);
+            }
+            return in.count();
+        }
+    }
+
+    /**
+     * Reads the whole file into an array. Only to be used for files that are known to be small.
+     *
+     * @param filePath to be read
+     * @return the array of the file, or an empty array in case of an error.
+     */
+    public static JSONArray readArray(String filePath) {
+        JSONArray array = new JSONArray();
+        try {
+            forEach(filePath, array::put);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return array;
+    }
+}
@@ -0,0 +1,267 @@
+package convert;
+
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes an array of objects to a json file element by element.<br>
+ * The layout of the output is given by the {@link Profile} selected on the command line, by default the same
+ * layout as {@code JSONArray.toString(1)}, except for arrays of one element: {@code toString(1)} writes the only
+ * element between the brackets without indenting it, this writer indents every element on its own line, because
+ * an element is written before it is known whether another one follows. The byte offset and length of the last
+ * written element are tracked, so that the element can be found in the file again (see {@link MergeIndex}).
+ */
+public class JsonArrayWriter implements Closeable {
+
+    /**
+     * Output profile, selected with the command line option --output=&lt;name&gt;.
+     */
+    public enum Profile {
+        /**
+         * indented like {@code JSONArray.toString(1)}, an array of one element is indented like longer arrays
+         * (default).
+         */
+        PRETTY(false, false),
+        /**
+         * without any whitespace.
+         */
+        COMPACT(true, false),
+        /**
+         * without any whitespace, every file gets a gzip compressed copy &lt;file&gt;.gz for the web server.
+         */
+        WEB(true, true);
+
+        /**
+         * true to write without whitespace.
+         */
+        private final boolean compact;
+
+        /**
+         * true to write a gzip compressed copy of every file.
+         */
+        private final boolean compressed;
+
+        Profile(boolean compact, boolean compressed) {
+            this.compact = compact;
+            this.compressed = compressed;
+        }
+
+        /**
+         * @param name of the profile, pretty, compact or web
+         * @return the profile
+         * @throws IllegalArgumentException when there is no profile with the name
+         */
+        public static Profile forName(String name) {
+            switch (name) {
+                case "pretty":
+                    return PRETTY;
+                case "compact":
+                    return COMPACT;
+                case "web":
+                    return WEB;
+                default:
+                    throw new IllegalArgumentException("Unknown output profile: " + name);
+            }
+        }
+    }
+
+    /**
+     * the profile of all written files.
+     */
+    private static volatile Profile profile = Profile.PRETTY;
+
+    /**
+     * size of the output buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * separator written in front of every element but the first.
+     */
+    private static final byte[] SEPARATOR = ",\n ".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * separator written in front of every element but the first in the compact layout.
+     */
+    private static final byte[] COMPACT_SEPARATOR = {','};
+
+    /**
+     * buffered stream of the file.
+     */
+    private final OutputStream out;
+
+    /**
+     * buffered stream of the compressed copy, null if the profile does not compress.
+     */
+    private final OutputStream compressed;
+
+    /**
+     * true to write without whitespace.
+     */
+    private final boolean compact;
+
+    /**
+     * number of bytes written so far.
+     */
+    private long position;
+
+    /**
+     * byte offset of the last written element.
+     */
+    private long lastOffset = -1;
+
+    /**
+     * number of elements written so far.
+     */
+    private int count;
+
+    /**
+     * Constructor. Creates or truncates the file and, depending on the profile, its compressed copy. A compressed
+     * copy left by an earlier run is deleted otherwise.
+     *
+     * @param path of the json file to be written
+     * @throws IOException when the file could not be opened
+     */
+    public JsonArrayWriter(Path path) throws IOException {
+        Profile current = profile;
+        this.compact = current.compact;
+        this.out = new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE);
+        if (current.compressed) {
+            this.compressed = new BufferedOutputStream(new GzipSidecar(GzipSidecar.of(path)), BUFFER_SIZE);
+        } else {
+            Files.deleteIfExists(GzipSidecar.of(path));
+            this.compressed = null;
+        }
+        writeBytes(new byte[]{'['});
+    }
+
+    /**
+     * @param profile of all written files
+     */
+    public static void setProfile(Profile profile) {
+        JsonArrayWriter.profile = profile;
+    }
+
+    /**
+     * Moves a written json file together with its compressed copy. A compressed copy of the target is deleted if
+     * the file has none.
+     *
+     * @param source  written json file
+     * @param target  to be replaced
+     * @param options of the move
+     * @throws IOException when a file could not be moved
+     */
+    public static void move(Path source, Path target, CopyOption... options) throws IOException {
+        Files.move(source, target, options);
+        if (Files.exists(GzipSidecar.of(source))) {
+            Files.move(GzipSidecar.of(source), GzipSidecar.of(target), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(GzipSidecar.of(target));
+        }
+    }
+
+    /**
+     * Serializes the object the way it is written as element of the array.
+     *
+     * @param obj to be serialized
+     * @return the utf-8 bytes of the element
+     */
+    public static byte[] serialize(JSONObject obj) {
+        if (profile.compact) {
+            return obj.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        StringWriter writer = new StringWriter();
+        obj.write(writer, 1, 1);
+        return writer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends the object to the array.
+     *
+     * @param obj to be written
+     * @throws IOException when the object could not be written
+     */
+    public void write(JSONObject obj) throws IOException {
+        writeElement(serialize(obj));
+    }
+
+    /**
+     * Appends an already serialized element to the array.
+     *
+     * @param element bytes of the element, as returned by {@link #serialize(JSONObject)}
+     * @throws IOException when the element could not be written
+     */
+    public void writeElement(byte[] element) throws IOException {
+        if (compact) {
+            if (count > 0) {
+                writeBytes(COMPACT_SEPARATOR);
+            }
+        } else if (count > 0) {
+            writeBytes(SEPARATOR);
+        } else {
+            writeBytes(SEPARATOR, 1, SEPARATOR.length - 1);
+        }
+        lastOffset = position;
+        writeBytes(element);
+        count++;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        out.write(bytes, offset, length);
+        if (compressed != null) {
+            compressed.write(bytes, offset, length);
+        }
+        position += length;
+    }
+
+    /**
+     * @return the byte offset of the last written element, -1 if nothing was written yet
+     */
+    public long lastOffset() {
+        return lastOffset;
+    }
+
+    /**
+     * @return the number of elements written so far
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Closes the array and the file.
+     *
+     * @throws IOException when the file could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (count > 0 && !compact) {
+                writeBytes(new byte[]{'\n'});
+            }
+            writeBytes(new byte[]{']'});
+        } finally {
+            try {
+                out.close();
+            } finally {
+                if (compressed != null) {
+                    compressed.close();
+                }
+            }
+        }
+    }
+}
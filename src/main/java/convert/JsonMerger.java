@@ -4,17 +4,37 @@ package convert;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 /**
- * Merges the json files.
+ * Merges the json files. Any number of paths can be merged in one pass, objects of newer paths replace objects of
+ * older paths with the same key.
  * <ul>
  * <li>directories</li>
  * <li>tests-engine-dependent.json</li>
@@ -26,15 +46,26 @@ import java.util.List;
 public class JsonMerger {
 
     /**
-     * newer path. all objects will be used.
+     * all paths to be merged, ordered from the oldest to the newest.
+     */
+    private final List<String> paths;
+
+    /**
+     * newest path. all objects will be used.
      */
     private final String newerPath;
 
     /**
-     * older path. oly objects that are not in the {@link #newerPath} will be used.
+     * oldest path. oly objects that are not in a newer path will be used.
      */
     private final String olderPath;
 
+    /**
+     * true when the newest object of a key is determined by its executionTimestamp instead of the order of the
+     * {@link #paths}.
+     */
+    private boolean byTimestamp;
+
     /**
      * target directory.
      */
@@ -70,6 +101,11 @@ public class JsonMerger {
      */
     private static final int MODE_ENGINES = 5;
 
+    /**
+     * maximum number of sub-merges running concurrently in directory mode.
+     */
+    private static final int MAX_PARALLEL_MERGES = 4;
+
     /**
      * List of the replaced objects.
      */
@@ -80,6 +116,11 @@ public class JsonMerger {
      */
     private final List<String> newObjects = new ArrayList<>();
 
+    /**
+     * Number of objects of the newer file that are identical to the older file.
+     */
+    private int unchanged;
+
     /**
      * Constructor.
      *
@@ -87,19 +128,30 @@ public class JsonMerger {
      * @param newerPath to be merged
      */
     public JsonMerger(String olderPath, String newerPath) {
-        this.olderPath = olderPath;
-        this.newerPath = newerPath;
-        File oldPath = new File(olderPath);
-        File newPath = new File(newerPath);
-        if (oldPath.isDirectory() && newPath.isDirectory()) {
+        this(Arrays.asList(olderPath, newerPath));
+    }
+
+    /**
+     * Constructor. The files are generated to the oldest path.
+     *
+     * @param paths to be merged, ordered from the oldest to the newest
+     */
+    public JsonMerger(List<String> paths) {
+        if (paths.size() < 2) {
+            throw new IllegalArgumentException("At least two paths are needed for merging.");
+        }
+        this.paths = new ArrayList<>(paths);
+        this.olderPath = paths.get(0);
+        this.newerPath = paths.get(paths.size() - 1);
+        if (paths.stream().allMatch(p -> new File(p).isDirectory())) {
             mode = MODE_DIRECTORY;
-        } else if (oldPath.getName().contains("tests-engine-dependent.json") && newPath.getName().contains("tests-engine-dependent.json")) {
+        } else if (allNamesContain("tests-engine-dependent.json")) {
             mode = MODE_ENGINE_DEPENDENT;
-        } else if (oldPath.getName().contains("tests-engine-independent.json") && newPath.getName().contains("tests-engine-independent.json")) {
+        } else if (allNamesContain("tests-engine-independent.json")) {
             mode = MODE_ENGINE_INDEPENDENT;
-        } else if (oldPath.getName().contains("feature-tree.json") && newPath.getName().contains("feature-tree.json")) {
+        } else if (allNamesContain("feature-tree.json")) {
             mode = MODE_FEATURE_TREE;
-        } else if (oldPath.getName().contains("engines.json") && newPath.getName().contains("engines.json")) {
+        } else if (allNamesContain("engines.json")) {
             mode = MODE_ENGINES;
         }
         if (mode == MODE_DIRECTORY) {
@@ -109,6 +161,17 @@ public class JsonMerger {
         }
     }
 
+    /**
+     * Constructor
+     *
+     * @param paths     to be merged, ordered from the oldest to the newest
+     * @param targetDir to generate the files to
+     */
+    public JsonMerger(List<String> paths, String targetDir) {
+        this(paths);
+        this.targetDir = targetDir;
+    }
+
     /**
      * Constructor
      *
@@ -121,12 +184,42 @@ public class JsonMerger {
         this.targetDir = targetDir;
     }
 
+    /**
+     * @param name to be checked
+     * @return true when the file names of all {@link #paths} contain the name
+     */
+    private boolean allNamesContain(String name) {
+        return paths.stream().allMatch(p -> new File(p).getName().contains(name));
+    }
+
+    /**
+     * Determines the newest object of a key by its executionTimestamp instead of the order of the paths. Objects
+     * without a timestamp are older than all objects with a timestamp. On equal timestamps the newer path wins.
+     *
+     * @param byTimestamp true to compare the executionTimestamp
+     */
+    public void setByTimestamp(boolean byTimestamp) {
+        this.byTimestamp = byTimestamp;
+    }
+
     /**
      * merges the json's.
      */
     public void merge() {
+        mergeFiles();
+        ArchiveStore.close();
+        if (mode != MODE_DIRECTORY) {
+            printReport();
+        }
+    }
+
+    /**
+     * merges the json's without printing the report.
+     */
+    private void mergeFiles() {
         newObjects.clear();
         replacedObjects.clear();
+        unchanged = 0;
         switch (mode) {
             case MODE_DIRECTORY:
                 mergeDirectories();
@@ -144,155 +237,469 @@ public class JsonMerger {
                 mergeEngines();
                 break;
         }
+    }
+
+    /**
+     * prints the replaced and added objects of the last merge.
+     */
+    private void printReport() {
         System.out.println("------------------");
         System.out.println("Replaced " + replacedObjects.size() + " objects:");
         replacedObjects.forEach(System.out::println);
         System.out.println("------------------");
         System.out.println("Added " + newObjects.size() + " objects:");
+        if (unchanged > 0) {
+            System.out.println("------------------");
+            System.out.println("Unchanged " + unchanged + " objects.");
+        }
     }
 
     /**
      * merges the engines.json
      */
     private void mergeEngines() {
-        String oldLine = readLines(olderPath);
-        String newLine = readLines(newerPath);
-        JSONArray oldArray = new JSONArray(oldLine);
-        JSONArray newArray = new JSONArray(newLine);
-        System.out.println("Read " + oldArray.length() + " old engines.");
-        System.out.println("Read " + newArray.length() + " new engines.");
-        JSONArray outputArray = new JSONArray();
-        for (int i = 0; i < newArray.length(); i++) {
-            outputArray.put(newArray.get(i));
-        }
-        for (int i = 0; i < oldArray.length(); i++) {
-            JSONObject oldTest = oldArray.getJSONObject(i);
-            if (!containsEngineId(newArray, oldTest.getString(Constants.ID_TOKEN))) {
-                outputArray.put(oldTest);
-                newObjects.add(oldTest.getString(Constants.ID_TOKEN));
-            } else {
-                replacedObjects.add(oldTest.getString(Constants.ID_TOKEN));
+        mergeStreaming("merged-engines.json", TestKey::ofEngine, "engines", false);
+    }
+
+    /**
+     * Streams the paths from the newest to the oldest to the output file in the {@link #targetDir}.<br>
+     * Objects are only written when no newer path has an object with the same key. Only the keys are kept in
+     * memory.<br>
+     * The output gets a {@link MergeIndex}. When the oldest file has a valid index and lies in the
+     * {@link #targetDir}, it is not parsed: its untouched objects are copied as raw bytes and objects of the newer
+     * files with an unchanged fingerprint only get their missing or changed files copied again.
+     *
+     * @param outputName  name of the output file
+     * @param key         function extracting the key of an object
+     * @param description of the objects, used for the console output
+     * @param copy        true when the files of the objects have to be copied to the {@link #targetDir}
+     */
+    private void mergeStreaming(String outputName, Function<JSONObject, TestKey> key, String description, boolean copy) {
+        if (byTimestamp) {
+            mergeByTimestamp(outputName, key, description, copy);
+            return;
+        }
+        String outputFile = targetDir + File.separator + outputName;
+        Path outputPath = Paths.get(outputFile);
+        Path tmpPath = Paths.get(outputFile + ".tmp");
+        MergeIndex oldIndex = isInTargetDir(olderPath) ? MergeIndex.load(olderPath) : null;
+        Set<TestKey> newKeys = new HashSet<>();
+        Set<TestKey> unchangedKeys = new HashSet<>();
+        try (MergeIndex.Writer index = new MergeIndex.Writer(outputFile);
+             DatasetShards shards = openShards(outputPath)) {
+            try (JsonArrayWriter out = new JsonArrayWriter(tmpPath)) {
+                for (int i = paths.size() - 1; i > 0; i--) {
+                    String path = paths.get(i);
+                    boolean newest = i == paths.size() - 1;
+                    Set<TestKey> keys = new HashSet<>();
+                    String parentPath = new File(path).getAbsoluteFile().getParent();
+                    //the files of a json file in the target directory are already there
+                    boolean copyPath = copy && !isInTargetDir(path);
+                    System.out.println("Reading: " + path + " ...");
+                    try (JsonArrayReader in = new JsonArrayReader(path)) {
+                        JSONObject test;
+                        while ((test = in.next()) != null) {
+                            TestKey testKey = key.apply(test);
+                            if (newKeys.contains(testKey)) {
+                                replacedObjects.add(testKey.toString());
+                                continue;
+                            }
+                            keys.add(testKey);
+                            byte[] element = JsonArrayWriter.serialize(test);
+                            String fingerprint = MergeIndex.fingerprint(element);
+                            MergeIndex.Entry oldEntry = oldIndex == null ? null : oldIndex.get(testKey);
+                            if (oldEntry != null && oldEntry.fingerprint.equals(fingerprint)) {
+                                unchangedKeys.add(testKey);
+                                //the paths depend on the feature, engine and name only, the files may be new
+                                if (copyPath) {
+                                    copyFiles(parentPath, ModelCodec.decodeTest(test), true);
+                                }
+                            } else if (copyPath) {
+                                Test decoded = ModelCodec.decodeTest(test);
+                                if (copyFiles(parentPath, decoded, false)) {
+                                    element = JsonArrayWriter.serialize(ModelCodec.encode(decoded));
+                                    fingerprint = MergeIndex.fingerprint(element);
+                                }
+                            }
+                            write(out, shards, testKey, element);
+                            index.add(testKey, out.lastOffset(), element.length, fingerprint);
+                            if (!newest) {
+                                newObjects.add(testKey.toString());
+                            }
+                        }
+                        System.out.println("Read " + in.count() + (newest ? " new " : " older ") + description + ".");
+                    }
+                    //duplicates within one file are kept, only newer files replace objects
+                    newKeys.addAll(keys);
+                }
+                if (oldIndex != null) {
+                    copyIndexedObjects(oldIndex, newKeys, unchangedKeys, out, index, shards);
+                } else {
+                    mergeOlderObjects(key, description, copy, newKeys, out, index, shards);
+                }
+                System.out.println("Wrote " + out.count() + " " + description + ".");
+            }
+            JsonArrayWriter.move(tmpPath, outputPath, StandardCopyOption.REPLACE_EXISTING);
+            index.commit();
+            if (shards != null) {
+                shards.commit();
             }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-        try {
-            System.out.println("Writing " + outputArray.length() + " engines.");
-            Files.write(Paths.get(targetDir + File.separator + "merged-engines.json"), outputArray.toString(1).getBytes());
+        unchanged += unchangedKeys.size();
+    }
+
+    /**
+     * Merges the paths keeping the objects of the path with the newest executionTimestamp of every key. Like in
+     * the merge by the order of the paths, duplicates within the winning path are kept.<br>
+     * Every path is read once. The objects are serialized to a spool file next to the output, only their key,
+     * timestamp and spool region are kept in memory. The files of an object are only copied when it is a final
+     * winner. The output is ordered by the first occurrence of a key, from the newest path to the oldest.
+     *
+     * @param outputName  name of the output file
+     * @param key         function extracting the key of an object
+     * @param description of the objects, used for the console output
+     * @param copy        true when the files of the objects have to be copied to the {@link #targetDir}
+     */
+    private void mergeByTimestamp(String outputName, Function<JSONObject, TestKey> key, String description,
+                                  boolean copy) {
+        String outputFile = targetDir + File.separator + outputName;
+        Path outputPath = Paths.get(outputFile);
+        Path tmpPath = Paths.get(outputFile + ".tmp");
+        Path spoolPath = Paths.get(outputFile + ".spool");
+        Map<TestKey, Candidate> candidates = new LinkedHashMap<>();
+        try (MergeIndex.Writer index = new MergeIndex.Writer(outputFile);
+             DatasetShards shards = openShards(outputPath)) {
+            try (OutputStream spool = new BufferedOutputStream(Files.newOutputStream(spoolPath))) {
+                long spoolPosition = 0;
+                for (int i = paths.size() - 1; i >= 0; i--) {
+                    String path = paths.get(i);
+                    //the objects of this path, they win a key once the whole path is read
+                    Map<TestKey, Candidate> pathCandidates = new LinkedHashMap<>();
+                    System.out.println("Reading: " + path + " ...");
+                    try (JsonArrayReader in = new JsonArrayReader(path)) {
+                        JSONObject test;
+                        while ((test = in.next()) != null) {
+                            TestKey testKey = key.apply(test);
+                            long timestamp = test.optLong(Constants.EXECUTION_TIMESTAMP_TOKEN, Long.MIN_VALUE);
+                            byte[] element = JsonArrayWriter.serialize(test);
+                            spool.write(element);
+                            pathCandidates.computeIfAbsent(testKey, k -> new Candidate(path))
+                                    .add(timestamp, spoolPosition, element.length);
+                            spoolPosition += element.length;
+                        }
+                        System.out.println("Read " + in.count() + " " + description + ".");
+                    }
+                    for (Map.Entry<TestKey, Candidate> e : pathCandidates.entrySet()) {
+                        Candidate candidate = candidates.get(e.getKey());
+                        if (candidate == null) {
+                            candidates.put(e.getKey(), e.getValue());
+                            continue;
+                        }
+                        replacedObjects.add(e.getKey().toString());
+                        //on equal timestamps the newer path wins
+                        if (e.getValue().timestamp > candidate.timestamp) {
+                            candidates.put(e.getKey(), e.getValue());
+                        }
+                    }
+                }
+            }
+            //the files of the json files in the target directory are already there
+            Set<String> inTargetDir = new HashSet<>();
+            paths.stream().filter(this::isInTargetDir).forEach(inTargetDir::add);
+            try (JsonArrayWriter out = new JsonArrayWriter(tmpPath);
+                 FileChannel spool = FileChannel.open(spoolPath, StandardOpenOption.READ)) {
+                for (Map.Entry<TestKey, Candidate> e : candidates.entrySet()) {
+                    Candidate candidate = e.getValue();
+                    String path = candidate.path;
+                    for (int j = 0; j < candidate.offsets.size(); j++) {
+                        byte[] element = readRegion(spool, candidate.offsets.get(j), candidate.lengths.get(j));
+                        if (copy && !inTargetDir.contains(path)) {
+                            Test test = ModelCodec.decodeTest(new JSONObject(new String(element,
+                                    StandardCharsets.UTF_8)));
+                            if (copyFiles(new File(path).getAbsoluteFile().getParent(), test, false)) {
+                                element = JsonArrayWriter.serialize(ModelCodec.encode(test));
+                            }
+                        }
+                        write(out, shards, e.getKey(), element);
+                        index.add(e.getKey(), out.lastOffset(), element.length, MergeIndex.fingerprint(element));
+                        if (!path.equals(newerPath)) {
+                            newObjects.add(e.getKey().toString());
+                        }
+                    }
+                }
+                System.out.println("Wrote " + out.count() + " " + description + ".");
+            }
+            JsonArrayWriter.move(tmpPath, outputPath, StandardCopyOption.REPLACE_EXISTING);
+            index.commit();
+            if (shards != null) {
+                shards.commit();
+            }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            try {
+                Files.deleteIfExists(spoolPath);
+            } catch (IOException e) {
+                System.err.println("Could not delete " + spoolPath);
+            }
         }
+    }
+
+    /**
+     * Objects of a key in one path, the newest found so far by
+     * {@link #mergeByTimestamp(String, Function, String, boolean)}.
+     */
+    private static final class Candidate {
+
+        /**
+         * the path the objects were read from.
+         */
+        private final String path;
+
+        /**
+         * newest executionTimestamp of the objects.
+         */
+        private long timestamp = Long.MIN_VALUE;
 
+        /**
+         * byte offsets of the serialized objects in the spool file.
+         */
+        private final List<Long> offsets = new ArrayList<>(1);
+
+        /**
+         * byte lengths of the serialized objects.
+         */
+        private final List<Integer> lengths = new ArrayList<>(1);
+
+        private Candidate(String path) {
+            this.path = path;
+        }
+
+        private void add(long timestamp, long offset, int length) {
+            this.timestamp = Math.max(this.timestamp, timestamp);
+            offsets.add(offset);
+            lengths.add(length);
+        }
     }
 
     /**
-     * Checks if the array of engine objects contains an engine with the id.
+     * Reads a region of the file.
      *
-     * @param testObjects array of engine objects to be checked
-     * @param id          to be checked
-     * @return true when the id is in the array, false otherwise
-     */
-    private boolean containsEngineId(JSONArray testObjects, String id) {
-        for (int i = 0; i < testObjects.length(); i++) {
-            if (testObjects.getJSONObject(i).get(Constants.ID_TOKEN).equals(id)) {
-                return true;
+     * @param channel of the file
+     * @param offset  of the region
+     * @param length  of the region
+     * @return the bytes of the region
+     * @throws IOException when the region could not be read
+     */
+    private static byte[] readRegion(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at " + (offset + buffer.position()));
             }
         }
-        return false;
+        return buffer.array();
     }
 
     /**
-     * merges the feature-tree.json
+     * Parses the oldest file and writes the objects that are not in a newer file.
+     *
+     * @param key         function extracting the key of an object
+     * @param description of the objects, used for the console output
+     * @param copy        true when the files of the objects have to be copied to the {@link #targetDir}
+     * @param newKeys     keys of the newer files
+     * @param out         to write the objects to
+     * @param index       of the output
+     * @param shards      of the output, may be null
+     * @throws IOException when the older file could not be read or the output could not be written
      */
-    private void mergeFeatureTree() {
-        String oldLine = readLines(olderPath);
-        String newLine = readLines(newerPath);
-        JSONArray oldArray = new JSONArray(oldLine);
-        JSONArray newArray = new JSONArray(newLine);
-        System.out.println("Read " + oldArray.length() + " old constructs.");
-        System.out.println("Read " + newArray.length() + " new constructs.");
-        JSONArray outputArray = new JSONArray();
-        for (int i = 0; i < newArray.length(); i++) {
+    private void mergeOlderObjects(Function<JSONObject, TestKey> key, String description, boolean copy,
+                                   Set<TestKey> newKeys, JsonArrayWriter out, MergeIndex.Writer index,
+                                   DatasetShards shards) throws IOException {
+        String oldParentPath = new File(olderPath).getAbsoluteFile().getParent();
+        boolean copyOlder = copy && !isInTargetDir(olderPath);
+        System.out.println("Reading: " + olderPath + " ...");
+        try (JsonArrayReader in = new JsonArrayReader(olderPath)) {
+            JSONObject oldTest;
+            while ((oldTest = in.next()) != null) {
+                TestKey oldKey = key.apply(oldTest);
+                if (!newKeys.contains(oldKey)) {
+                    byte[] element = JsonArrayWriter.serialize(oldTest);
+                    if (copyOlder) {
+                        Test decoded = ModelCodec.decodeTest(oldTest);
+                        if (copyFiles(oldParentPath, decoded, false)) {
+                            element = JsonArrayWriter.serialize(ModelCodec.encode(decoded));
+                        }
+                    }
+                    write(out, shards, oldKey, element);
+                    index.add(oldKey, out.lastOffset(), element.length, MergeIndex.fingerprint(element));
+                    newObjects.add(oldKey.toString());
+                } else {
+                    replacedObjects.add(oldKey.toString());
+                }
+            }
+            System.out.println("Read " + in.count() + " old " + description + ".");
+        }
+    }
 
-            outputArray.put(newArray.get(i));
+    /**
+     * Copies the objects of the oldest file that are not in a newer file as raw bytes, using the index of the
+     * older file. The files of these objects are already in the {@link #targetDir}.
+     *
+     * @param oldIndex      index of the older file
+     * @param newKeys       keys of the newer files
+     * @param unchangedKeys keys of the newer files whose object is identical in the older file
+     * @param out           to write the objects to
+     * @param index         of the output
+     * @param shards        of the output, may be null
+     * @throws IOException when the older file could not be read or the output could not be written
+     */
+    private void copyIndexedObjects(MergeIndex oldIndex, Set<TestKey> newKeys, Set<TestKey> unchangedKeys,
+                                    JsonArrayWriter out, MergeIndex.Writer index, DatasetShards shards)
+            throws IOException {
+        System.out.println("Copying indexed objects of: " + olderPath + " ...");
+        try (FileChannel channel = FileChannel.open(Paths.get(olderPath), StandardOpenOption.READ)) {
+            for (MergeIndex.Entry entry : oldIndex.entries()) {
+                TestKey oldKey = entry.key;
+                if (!newKeys.contains(oldKey)) {
+                    write(out, shards, oldKey, readRegion(channel, entry.offset, entry.length));
+                    index.add(oldKey, out.lastOffset(), entry.length, entry.fingerprint);
+                    newObjects.add(oldKey.toString());
+                } else if (!unchangedKeys.contains(oldKey)) {
+                    replacedObjects.add(oldKey.toString());
+                }
+            }
         }
-        for (int i = 0; i < oldArray.length(); i++) {
-            JSONObject oldCap = oldArray.getJSONObject(i);
-            JSONObject newCap = getObjectWithId(outputArray, oldCap.getString("id"));
-            if (newCap == null) {
-                //capability not present
-                outputArray.put(oldCap);
-            } else {
-                System.out.println("both present merging: " + oldCap.getString("id"));
+        System.out.println("Copied " + oldIndex.entries().size() + " indexed old objects.");
+    }
 
-                String nextToken = getNextToken(null);
-                JSONArray oldNextLevel = oldCap.getJSONArray(nextToken);
-                JSONArray newNextLevel = newCap.getJSONArray(nextToken);
-                oldCap.remove(nextToken);
+    /**
+     * Starts the shards of an engine dependent output, see {@link DatasetShards}.
+     *
+     * @param outputPath the output
+     * @return the shards, null if the output is not engine dependent or no shards are written
+     * @throws IOException when the shards could not be started
+     */
+    private static DatasetShards openShards(Path outputPath) throws IOException {
+        return outputPath.getFileName().toString().contains("tests-engine-dependent")
+                ? DatasetShards.open(outputPath) : null;
+    }
 
-                oldCap.put(nextToken, mergeLGCF(oldNextLevel, newNextLevel, nextToken));
-            }
+    /**
+     * Writes an object to the output and to its shard.
+     *
+     * @param out     the output
+     * @param shards  of the output, may be null
+     * @param key     (featureID, engineID) of the object
+     * @param element the serialized object
+     * @throws IOException when the object could not be written
+     */
+    private static void write(JsonArrayWriter out, DatasetShards shards, TestKey key, byte[] element)
+            throws IOException {
+        out.writeElement(element);
+        if (shards != null) {
+            shards.write(key.second(), key.first(), element);
         }
-        try {
-            System.out.println("Writing " + outputArray.length() + " constructs.");
-            Files.write(Paths.get(targetDir + File.separator + "merged-feature-tree.json"), outputArray.toString(1).getBytes());
+    }
+
+    /**
+     * @param jsonFile to be checked
+     * @return true when the json file lies directly in the {@link #targetDir}
+     */
+    private boolean isInTargetDir(String jsonFile) {
+        Path parent = Paths.get(jsonFile).toAbsolutePath().normalize().getParent();
+        return parent != null && parent.equals(Paths.get(targetDir).toAbsolutePath().normalize());
+    }
+
+    /**
+     * merges the feature-tree.json
+     */
+    private void mergeFeatureTree() {
+        List<FeatureTreeNode> output = readFeatureTree(olderPath);
+        for (int i = 1; i < paths.size(); i++) {
+            output = mergeFeatureTree(output, readFeatureTree(paths.get(i)));
+        }
+        System.out.println("Writing " + output.size() + " constructs.");
+        Path outputPath = Paths.get(targetDir + File.separator + "merged-feature-tree.json");
+        try (JsonArrayWriter out = new JsonArrayWriter(outputPath)) {
+            for (FeatureTreeNode capability : output) {
+                out.write(ModelCodec.encode(capability));
+            }
             System.out.println("done writing.");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private JSONArray mergeLGCF(JSONArray oldArray, JSONArray newArray, String currentLevel) {
-        JSONArray output = new JSONArray();
-        for (int i = 0; i < newArray.length(); i++) {
-            output.put(newArray.get(i));
-        }
-        for (int i = 0; i < oldArray.length(); i++) {
-            JSONObject oldObj = oldArray.getJSONObject(i);
-            JSONObject newObj = getObjectWithId(output, oldObj.getString("id"));
-            if (newObj == null) {
-                output.put(oldObj);
-            } else {
-                //id already present => merging next level if present
-                String nextToken = getNextToken(currentLevel);
-                if (nextToken == null) {
-                    //feature level
-                    continue;
-                }
+    /**
+     * merges two feature trees.
+     *
+     * @param oldTree older feature tree
+     * @param newTree newer feature tree
+     * @return the merged feature tree
+     */
+    private List<FeatureTreeNode> mergeFeatureTree(List<FeatureTreeNode> oldTree, List<FeatureTreeNode> newTree) {
+        System.out.println("Read " + oldTree.size() + " old constructs.");
+        System.out.println("Read " + newTree.size() + " new constructs.");
+        List<FeatureTreeNode[]> bothPresent = new ArrayList<>();
+        List<FeatureTreeNode> output = mergeLevel(oldTree, newTree, bothPresent);
+        //capabilities are independent of each other, so their subtrees are merged in parallel
+        List<ForkJoinTask<?>> merges = new ArrayList<>();
+        for (FeatureTreeNode[] caps : bothPresent) {
+            merges.add(ForkJoinTask.adapt(() -> mergeNextLevel(caps[0], caps[1])).fork());
+        }
+        merges.forEach(ForkJoinTask::join);
+        System.out.println("Merged " + bothPresent.size() + " capabilities present in both trees.");
+        return output;
+    }
 
-                System.out.println("both present merging: " + oldObj.getString("id"));
-                System.out.println();
-                JSONArray oldNextLevel = oldObj.getJSONArray(nextToken);
-                JSONArray newNextLevel = newObj.getJSONArray(nextToken);
-                oldObj.remove(nextToken);
-                //recursive step merging the next level
-                oldObj.put(nextToken, mergeLGCF(oldNextLevel, newNextLevel, nextToken));
+    /**
+     * Merges the nodes of one level of the feature tree by their id. The output contains all new nodes in
+     * their order followed by the old nodes whose id is not in the new level.
+     *
+     * @param oldLevel    nodes of the older feature tree
+     * @param newLevel    nodes of the newer feature tree
+     * @param bothPresent receives the pairs {old node, new node} with the same id
+     * @return the merged level
+     */
+    private List<FeatureTreeNode> mergeLevel(List<FeatureTreeNode> oldLevel, List<FeatureTreeNode> newLevel,
+                                             List<FeatureTreeNode[]> bothPresent) {
+        List<FeatureTreeNode> output = new ArrayList<>(oldLevel.size() + newLevel.size());
+        Map<String, FeatureTreeNode> newById = new HashMap<>(newLevel.size() * 2);
+        for (FeatureTreeNode newNode : newLevel) {
+            newById.putIfAbsent(newNode.getId(), newNode);
+            output.add(newNode);
+        }
+        for (FeatureTreeNode oldNode : oldLevel) {
+            FeatureTreeNode newNode = newById.get(oldNode.getId());
+            if (newNode == null) {
+                output.add(oldNode);
+            } else {
+                bothPresent.add(new FeatureTreeNode[]{oldNode, newNode});
             }
         }
         return output;
     }
 
-    private String getNextToken(String token) {
-        switch (token) {
-            case "features":
-                return null;
-            case "constructs":
-                return "features";
-            case "groups":
-                return "constructs";
-            case "languages":
-                return "groups";
-            default:
-                return "languages";
+    /**
+     * Merges the children of a node present in both feature trees into the new node.
+     *
+     * @param oldNode older node
+     * @param newNode newer node, receives the merged children
+     */
+    private void mergeNextLevel(FeatureTreeNode oldNode, FeatureTreeNode newNode) {
+        if (oldNode.getChildren() == null || newNode.getChildren() == null) {
+            //feature level or no children
+            return;
         }
-    }
-
-    private JSONObject getObjectWithId(JSONArray newArray, String id) {
-        for (int i = 0; i < newArray.length(); i++) {
-            JSONObject jsonObject = newArray.getJSONObject(i);
-            if (jsonObject.getString("id").equals(id)) {
-                return jsonObject;
-            }
+        List<FeatureTreeNode[]> bothPresent = new ArrayList<>();
+        List<FeatureTreeNode> merged = mergeLevel(oldNode.getChildren(), newNode.getChildren(), bothPresent);
+        for (FeatureTreeNode[] nodes : bothPresent) {
+            mergeNextLevel(nodes[0], nodes[1]);
         }
-        return null;
+        newNode.setChildren(merged);
     }
 
     private JSONObject getConstruct(String group, String name, JSONArray newArray) {
@@ -309,227 +716,211 @@ public class JsonMerger {
      * merges the engines-test-independent.json
      */
     private void mergeEngineIndependent() {
-        new PathConverter(olderPath, true).convert();
-        String oldLine = readLines(olderPath);
-        new PathConverter(newerPath, true).convert();
-        String newLine = readLines(newerPath);
-        JSONArray oldArray = new JSONArray(oldLine);
-        JSONArray newArray = new JSONArray(newLine);
-        System.out.println("Read " + oldArray.length() + " old engine independent tests.");
-        System.out.println("Read " + newArray.length() + " new engine independent tests.");
-        JSONArray outputArray = new JSONArray();
-        for (int i = 0; i < newArray.length(); i++) {
-            String newParentPath = new File(newerPath).getAbsoluteFile().getParent();
-            JSONObject newTest = oldArray.getJSONObject(i);
-            if (!newerPath.equals(targetDir)) {
-                copyFiles(newParentPath, newTest);
-            }
-            outputArray.put(newArray.get(i));
-        }
-        String oldParentPath = new File(olderPath).getAbsoluteFile().getParent();
-        for (int i = 0; i < oldArray.length(); i++) {
-            JSONObject oldTest = oldArray.getJSONObject(i);
-            if (!containsIndependentFeatureId(newArray, oldTest.getString(Constants.FEATURE_ID_TOKEN))) {
-                if (!olderPath.equals(targetDir)) {
-                    copyFiles(oldParentPath, oldTest);
-                }
-                outputArray.put(oldTest);
-                newObjects.add(oldTest.getString(Constants.FEATURE_ID_TOKEN));
-            } else {
-                replacedObjects.add(oldTest.getString(Constants.FEATURE_ID_TOKEN));
-            }
-        }
-        try {
-            System.out.println("Writing " + outputArray.length() + " engine independent tests.");
-            Files.write(Paths.get(targetDir + File.separator + "merged-tests-engine-independent.json"), outputArray.toString(1).getBytes());
-            System.out.println("done writing.");
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (!convertPaths()) {
+            return;
         }
+        mergeStreaming("merged-tests-engine-independent.json", TestKey::ofEngineIndependent,
+                "engine independent tests", true);
     }
 
     /**
-     * Checks if the array of engine independent tests contains the featureID
+     * Converts the paths of the json files to be merged, unless they are converted already.
      *
-     * @param testObjects of engine independent tests to be checked
-     * @param featureId   to be checked
-     * @return true when id is in the array, false otherwise
-     */
-    private boolean containsIndependentFeatureId(JSONArray testObjects, String featureId) {
-        for (int i = 0; i < testObjects.length(); i++) {
-            if (testObjects.getJSONObject(i).get(Constants.FEATURE_ID_TOKEN).equals(featureId)) {
-                return true;
+     * @return false if a json file could not be converted, it must not be merged with its old paths
+     */
+    private boolean convertPaths() {
+        List<String> failed = new ArrayList<>();
+        for (String path : paths) {
+            if (!new PathConverter(path, true).convert()) {
+                failed.add(path);
             }
         }
-        return false;
+        if (!failed.isEmpty()) {
+            System.err.println("Could not merge " + String.join(", ", paths));
+            System.err.println("Reason: " + String.join(", ", failed)
+                    + " could not be converted, merge again to resume the conversion.");
+        }
+        return failed.isEmpty();
     }
 
     /**
      * merges the directories.
      */
     private void mergeDirectories() {
-        List<File> oldFiles = Arrays.asList(new File(olderPath).listFiles(f -> f.getName().contains(".json")));
-        File oldEngineDependent = null;
-        File oldEngineIndependent = null;
-        File oldConstructs = null;
-        File oldEngines = null;
-        for (File f : oldFiles) {
-            if (f.getName().contains("tests-engine-dependent.json")) {
-                oldEngineDependent = f;
-            } else if (f.getName().contains("tests-engine-independent.json")) {
-                oldEngineIndependent = f;
-            } else if (f.getName().contains("constructs.json")) {
-                oldConstructs = f;
-            } else if (f.getName().contains("engines.json")) {
-                oldEngines = f;
+        String[] names = {"tests-engine-dependent.json", "tests-engine-independent.json", "constructs.json",
+                "engines.json"};
+        List<JsonMerger> mergers = new ArrayList<>();
+        for (String name : names) {
+            List<String> files = new ArrayList<>();
+            for (String dir : paths) {
+                File file = findJsonFile(new File(dir), name);
+                if (file != null) {
+                    files.add(file.toString());
+                }
             }
+            if (files.size() > 1) {
+                JsonMerger merger = new JsonMerger(files, targetDir);
+                merger.setByTimestamp(byTimestamp);
+                mergers.add(merger);
+            }
+        }
+        if (mergers.isEmpty()) {
+            return;
         }
 
-        List<File> newFiles = Arrays.asList(new File(newerPath).listFiles(f -> f.getName().contains(".json")));
-        File newEngineDependent = null;
-        File newEngineIndependent = null;
-        File newConstructs = null;
-        File newEngines = null;
-        for (File f : newFiles) {
-            if (f.getName().contains("tests-engine-dependent.json")) {
-                newEngineDependent = f;
-            } else if (f.getName().contains("tests-engine-independent.json")) {
-                newEngineIndependent = f;
-            } else if (f.getName().contains("constructs.json")) {
-                newConstructs = f;
-            } else if (f.getName().contains("engines.json")) {
-                newEngines = f;
+        //json files of the same directory share its files directory, only the first converted json is converted.
+        //they are converted before the sub-merges start, so that this is always the engine dependent one
+        for (JsonMerger merger : mergers) {
+            if ((merger.mode == MODE_ENGINE_DEPENDENT || merger.mode == MODE_ENGINE_INDEPENDENT)
+                    && !merger.convertPaths()) {
+                return;
             }
         }
-        if (oldEngineDependent != null && newEngineDependent != null) {
-            new JsonMerger(oldEngineDependent.toString(), newEngineDependent.toString()).merge();
+
+        //the files are disjoint, so the sub-merges can run concurrently
+        int threads = Math.min(mergers.size(), Math.min(MAX_PARALLEL_MERGES, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<?>> results = new ArrayList<>();
+        for (JsonMerger merger : mergers) {
+            results.add(executor.submit(merger::mergeFiles));
+        }
+        executor.shutdown();
+        for (int i = 0; i < mergers.size(); i++) {
+            try {
+                results.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                return;
+            } catch (ExecutionException e) {
+                System.err.println("Could not merge " + mergers.get(i).newerPath);
+                e.getCause().printStackTrace();
+            }
         }
-        if (oldEngineIndependent != null && newEngineIndependent != null) {
-            new JsonMerger(oldEngineIndependent.toString(), newEngineIndependent.toString()).merge();
+        for (JsonMerger merger : mergers) {
+            System.out.println("==================");
+            System.out.println("Merged " + String.join(", ", merger.paths));
+            merger.printReport();
         }
-        if (oldConstructs != null && newConstructs != null) {
-            new JsonMerger(oldConstructs.toString(), newConstructs.toString()).merge();
+    }
+
+    /**
+     * Finds the json file of a directory, e.g. tests-engine-dependent.json. A file with exactly the name is
+     * preferred over files containing the name, like merged-tests-engine-dependent.json.
+     *
+     * @param dir  to be searched
+     * @param name part of the file name
+     * @return the file, or null when there is no such file
+     */
+    private File findJsonFile(File dir, String name) {
+        File exact = new File(dir, name);
+        if (exact.isFile()) {
+            return exact;
         }
-        if (oldEngines != null && newEngines != null) {
-            new JsonMerger(oldEngines.toString(), newEngines.toString()).merge();
+        File[] files = dir.listFiles(f -> f.getName().contains(name) && f.getName().endsWith(".json"));
+        if (files == null || files.length == 0) {
+            return null;
         }
+        return files[files.length - 1];
     }
 
     /**
      * merges tests-engine-dependent.json
      */
     private void mergeEngineDependent() {
-        new PathConverter(olderPath, true).convert();
-        new PathConverter(newerPath, true).convert();
-        String oldLine = readLines(olderPath);
-        String newLine = readLines(newerPath);
-        JSONArray oldArray = new JSONArray(oldLine);
-        JSONArray newArray = new JSONArray(newLine);
-        System.out.println("Read " + oldArray.length() + " old engine dependent tests.");
-        System.out.println("Read " + newArray.length() + " new engine dependent tests.");
-        JSONArray outputArray = new JSONArray();
-        for (int i = 0; i < newArray.length(); i++) {
-            JSONObject newTest = newArray.getJSONObject(i);
-            String newParentPath = new File(newerPath).getAbsoluteFile().getParent();
-            if (!newerPath.equals(targetDir)) {
-                copyFiles(newParentPath, newTest);
-            }
-            outputArray.put(newArray.get(i));
-        }
-        String oldParentPath = new File(olderPath).getAbsoluteFile().getParent();
-        for (int i = 0; i < oldArray.length(); i++) {
-            JSONObject oldTest = oldArray.getJSONObject(i);
-            if (!containsDependentTest(newArray, oldTest.getString(Constants.FEATURE_ID_TOKEN), oldTest.getString(Constants.ENGINE_ID_TOKEN))) {
-                copyFiles(oldParentPath, oldTest);
-                outputArray.put(oldTest);
-                newObjects.add(oldTest.getString(Constants.FEATURE_ID_TOKEN) + " of " + oldTest.getString(Constants.ENGINE_ID_TOKEN));
-            } else {
-                replacedObjects.add(oldTest.getString(Constants.FEATURE_ID_TOKEN) + " of " + oldTest.getString(Constants.ENGINE_ID_TOKEN));
-            }
-        }
-        try {
-            System.out.println("Writing " + outputArray.length() + " engine dependent tests.");
-            Files.write(Paths.get(targetDir + File.separator + "merged-tests-engine-dependent.json"), outputArray.toString(1).getBytes());
-            System.out.println("done writing.");
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (!convertPaths()) {
+            return;
         }
+        mergeStreaming("merged-tests-engine-dependent.json", TestKey::ofEngineDependent,
+                "engine dependent tests", true);
     }
 
     /**
-     * Reads the file as a line.
+     * Reads the capabilities of a feature-tree.json.
      *
      * @param filePath to be read
-     * @return the contents of the file, or '[]' in case of an error.
+     * @return the capabilities of the file, or the capabilities read so far in case of an error.
      */
-    private String readLines(String filePath) {
-        String line = "[]";
+    private List<FeatureTreeNode> readFeatureTree(String filePath) {
         System.out.println("Reading: " + filePath + " ...");
-        try {
-            line = Files.readAllLines(Paths.get(filePath)).parallelStream()
-                    .reduce((s1, s2) -> s1 + s2)
-                    .orElse(line);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        List<FeatureTreeNode> capabilities = ModelCodec.readFeatureTree(filePath);
         System.out.println("Done Reading.");
-        return line;
-    }
-
-    /**
-     * Checks if the array of engine dependent tests contains a est with the featureId and engineId
-     *
-     * @param testObjects of the engine dependent tests to be checked
-     * @param featureId   to be checked
-     * @param engineId    to be checked
-     * @return true when the test with featureId/engineId is in the array, false otherwise
-     */
-    private boolean containsDependentTest(JSONArray testObjects, String featureId, String engineId) {
-        for (int i = 0; i < testObjects.length(); i++) {
-            if (testObjects.getJSONObject(i).get(Constants.FEATURE_ID_TOKEN).equals(featureId) && testObjects.getJSONObject(i).get(Constants.ENGINE_ID_TOKEN).equals(engineId)) {
-                return true;
-            }
-        }
-        return false;
+        return capabilities;
     }
 
     /**
-     * copies the files in the array from the oldParent to the targetDir.
+     * copies the files of the test from the oldParent to the targetDir on the {@link IoExecutor}. The paths of the
+     * files are moved to the current {@link FileLayout}.
      *
-     * @param oldParent to be copied from
-     * @param obj       to be copied
-     */
-    private void copyFiles(String oldParent, JSONObject obj) {
-        List<String> toCopy = new ArrayList<>();
-        if (obj.has(Constants.ENGINE_INDEPENDENT_FILES_TOKEN)) {
-            JSONArray arr = obj.getJSONArray(Constants.ENGINE_INDEPENDENT_FILES_TOKEN);
-            for (int i = 0; i < arr.length(); i++) {
-                toCopy.add(arr.getString(i));
-            }
-        }
-        if (obj.has(Constants.ENGINE_DEPENDENT_FILES_TOKEN)) {
-            JSONArray arr = obj.getJSONArray(Constants.ENGINE_DEPENDENT_FILES_TOKEN);
-            for (int i = 0; i < arr.length(); i++) {
-                toCopy.add(arr.getString(i));
-            }
-        }
-        if (obj.has(Constants.LOG_FILES_TOKEN)) {
-            JSONArray arr = obj.getJSONArray(Constants.LOG_FILES_TOKEN);
-            for (int i = 0; i < arr.length(); i++) {
-                toCopy.add(arr.getString(i));
-            }
-        }
+     * @param oldParent   to be copied from
+     * @param test        to be copied, receives the paths in the current layout
+     * @param onlyChanged true to copy only the files that are missing in the targetDir, have another size or an
+     *                    older modification time than their source
+     * @return true when a path of the test was changed
+     */
+    private boolean copyFiles(String oldParent, Test test, boolean onlyChanged) {
+        Map<String, String> toCopy = new LinkedHashMap<>();
+        FileList engineIndependentFiles = relocate(test.getEngineIndependentFiles(), test, toCopy);
+        FileList engineDependentFiles = relocate(test.getEngineDependentFiles(), test, toCopy);
+        FileList logFiles = relocate(test.getLogFiles(), test, toCopy);
+        boolean changed = !Objects.equals(engineIndependentFiles, test.getEngineIndependentFiles())
+                || !Objects.equals(engineDependentFiles, test.getEngineDependentFiles())
+                || !Objects.equals(logFiles, test.getLogFiles());
+        test.setEngineIndependentFiles(engineIndependentFiles);
+        test.setEngineDependentFiles(engineDependentFiles);
+        test.setLogFiles(logFiles);
         if (toCopy.size() > 0) {
-            toCopy.parallelStream().forEach(p -> {
-                String newPath = targetDir + File.separator + p;
-                String oldPath = oldParent + File.separator + p;
-                new File(newPath).mkdirs();
+            IoExecutor.forEach(toCopy.entrySet(), p -> {
+                String newPath = targetDir + File.separator + p.getValue();
+                String oldPath = oldParent + File.separator + p.getKey();
                 try {
-                    Files.copy(Paths.get(oldPath), Paths.get(newPath), StandardCopyOption.REPLACE_EXISTING);
+                    if (onlyChanged && isCopied(Paths.get(oldPath), Paths.get(newPath))) {
+                        return;
+                    }
+                    Files.createDirectories(ArchiveStore.directoryOf(Paths.get(newPath)));
+                    FileCopier.copy(Paths.get(oldPath), Paths.get(newPath));
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
             });
         }
+        return changed;
+    }
+
+    /**
+     * @param source of a copy
+     * @param target of the copy, may be in an archive
+     * @return true if the target exists with the size of the source and is not older than the source
+     * @throws IOException when the source could not be read
+     */
+    private static boolean isCopied(Path source, Path target) throws IOException {
+        Path copied = ArchiveStore.resolve(target);
+        if (!Files.exists(copied)) {
+            return false;
+        }
+        return Files.size(copied) == Files.size(source)
+                && Files.getLastModifiedTime(copied).compareTo(Files.getLastModifiedTime(source)) >= 0;
+    }
+
+    /**
+     * Moves the files of a test to the current {@link FileLayout}.
+     *
+     * @param files  to be moved, may be null
+     * @param test   the files belong to
+     * @param toCopy receives the old and the new path of every file
+     * @return the files in the current layout, null if the files were null
+     */
+    private FileList relocate(FileList files, Test test, Map<String, String> toCopy) {
+        if (files == null) {
+            return null;
+        }
+        FileLayout layout = FileLayout.get();
+        List<String> relocated = new ArrayList<>(files.size());
+        for (String path : files) {
+            String newPath = layout.relocate(path, test.getEngineId(), test.getFeatureId());
+            toCopy.put(path, newPath);
+            relocated.add(newPath);
+        }
+        return FileList.of(relocated);
     }
 }
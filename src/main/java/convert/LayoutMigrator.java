@@ -0,0 +1,200 @@
+package convert;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Migrates a converted directory to the current {@link FileLayout}.<br>
+ * The files referenced by the tests-engine-dependent and tests-engine-independent json files of the directory
+ * (including the merged ones) are moved to their path in the layout, the json files and their {@link DatasetShards}
+ * are rewritten and the empty directories of the old layout are removed. The backups (orig-*.json) are not touched. Files are packed into or
+ * unpacked from archives when one of the layouts is an {@link ArchiveLayout}.
+ */
+public class LayoutMigrator {
+
+    /**
+     * directory containing the json files and the files directory.
+     */
+    private final String directory;
+
+    /**
+     * number of moved files.
+     */
+    private int moved;
+
+    /**
+     * number of referenced files that do not exist.
+     */
+    private int missing;
+
+    /**
+     * files copied into an archive, deleted once the archive is written.
+     */
+    private final List<Path> packed = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param directory containing the json files and the files directory
+     */
+    public LayoutMigrator(String directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Migrates the directory.
+     */
+    public void migrate() {
+        Path dir = Paths.get(directory);
+        List<Path> jsonFiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.json")) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (!name.startsWith("orig-") && (name.contains("tests-engine-dependent")
+                        || name.contains("tests-engine-independent"))) {
+                    jsonFiles.add(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not list " + directory);
+            System.err.println("Reason: " + e.getMessage());
+            return;
+        }
+        jsonFiles.sort(null);
+        for (Path jsonFile : jsonFiles) {
+            migrate(dir, jsonFile);
+        }
+        removeEmptyDirectories(dir.resolve(FileLayout.FILES));
+        System.out.println("Moved " + moved + " files, " + missing + " files are missing.");
+    }
+
+    /**
+     * Moves the files of a json file and rewrites its paths.
+     *
+     * @param dir      containing the json file
+     * @param jsonFile to be migrated
+     */
+    private void migrate(Path dir, Path jsonFile) {
+        System.out.println("Migrating: " + jsonFile);
+        FileLayout layout = FileLayout.get();
+        Path migrated = Paths.get(jsonFile + ".tmp");
+        //the shards of a merged file contain the same paths and are rewritten in the same pass
+        try (DatasetShards shards = DatasetShards.reopen(jsonFile)) {
+            try (JsonArrayReader in = new JsonArrayReader(jsonFile);
+                 JsonArrayWriter out = new JsonArrayWriter(migrated)) {
+                JSONObject obj;
+                while ((obj = in.next()) != null) {
+                    Test test = ModelCodec.decodeTest(obj);
+                    test.setEngineDependentFiles(move(dir, layout, test, test.getEngineDependentFiles()));
+                    test.setEngineIndependentFiles(move(dir, layout, test, test.getEngineIndependentFiles()));
+                    test.setLogFiles(move(dir, layout, test, test.getLogFiles()));
+                    byte[] element = JsonArrayWriter.serialize(ModelCodec.encode(test));
+                    out.writeElement(element);
+                    if (shards != null) {
+                        shards.write(test.getEngineId(), test.getFeatureId(), element);
+                    }
+                }
+            }
+            ArchiveStore.close();
+            for (Path file : packed) {
+                Files.deleteIfExists(file);
+            }
+            packed.clear();
+            JsonArrayWriter.move(migrated, jsonFile, StandardCopyOption.REPLACE_EXISTING);
+            if (shards != null) {
+                shards.commit();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not migrate " + jsonFile);
+            System.err.println("Reason: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the files of a test to their path in the layout.
+     *
+     * @param dir    containing the json file
+     * @param layout to be moved to
+     * @param test   the files belong to
+     * @param files  to be moved, may be null
+     * @return the paths of the files in the layout, null if the files were null
+     * @throws IOException when a file could not be moved
+     */
+    private FileList move(Path dir, FileLayout layout, Test test, FileList files) throws IOException {
+        if (files == null) {
+            return null;
+        }
+        List<String> relocated = new ArrayList<>(files.size());
+        for (String path : files) {
+            String newPath = layout.relocate(path, test.getEngineId(), test.getFeatureId());
+            Path source = dir.resolve(path.replace("\\", File.separator).replace("/", File.separator));
+            Path target = dir.resolve(newPath);
+            if (!source.equals(target)) {
+                if (Files.exists(ArchiveStore.resolve(source))) {
+                    Files.createDirectories(ArchiveStore.directoryOf(target));
+                    if (ArchiveStore.isArchived(target)) {
+                        ArchiveStore.copy(source, target);
+                        packed.add(source);
+                    } else if (ArchiveStore.isArchived(source)) {
+                        ArchiveStore.move(source, target);
+                    } else {
+                        Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    moved++;
+                } else if (!Files.exists(ArchiveStore.resolve(target))) {
+                    //already moved for an other json file otherwise
+                    missing++;
+                }
+            }
+            relocated.add(newPath);
+        }
+        return FileList.of(relocated);
+    }
+
+    /**
+     * Removes the empty directories below the files directory, except the content store.
+     *
+     * @param filesDir the files directory
+     */
+    private void removeEmptyDirectories(Path filesDir) {
+        if (!Files.isDirectory(filesDir)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(filesDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                    return d.getFileName().toString().equals(ContentStore.STORE_DIRECTORY)
+                            ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                    if (!d.equals(filesDir)) {
+                        try (DirectoryStream<Path> entries = Files.newDirectoryStream(d)) {
+                            if (!entries.iterator().hasNext()) {
+                                Files.delete(d);
+                            }
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Could not remove the empty directories of " + filesDir);
+            System.err.println("Reason: " + e.getMessage());
+        }
+    }
+}
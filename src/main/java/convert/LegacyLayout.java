@@ -0,0 +1,19 @@
+package convert;
+
+import java.io.File;
+
+/**
+ * The original layout: files/&lt;category&gt;/[&lt;engine&gt;/]&lt;abs(featureID.hashCode())&gt;.<br>
+ * With thousands of features every engine directory gets thousands of entries.
+ */
+public class LegacyLayout extends FileLayout {
+
+    @Override
+    public String directory(String category, String engineId, String featureId) {
+        String directory = FILES + File.separator + category + File.separator;
+        if (!category.equals(ENGINE_INDEPENDENT)) {
+            directory += engineId + File.separator;
+        }
+        return directory + Math.abs(featureId.hashCode());
+    }
+}
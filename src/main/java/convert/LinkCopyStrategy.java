@@ -0,0 +1,49 @@
+package convert;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Links the target to the source instead of copying the bytes, turning the copy into a metadata operation.<br>
+ * Hard links fall back to a copy when source and target are on different file systems. Symbolic links point to
+ * the absolute source path, so the source must not be removed afterwards.
+ */
+public class LinkCopyStrategy implements CopyStrategy {
+
+    /**
+     * true for symbolic links, false for hard links.
+     */
+    private final boolean symbolic;
+
+    /**
+     * Constructor.
+     *
+     * @param symbolic true for symbolic links, false for hard links
+     */
+    public LinkCopyStrategy(boolean symbolic) {
+        this.symbolic = symbolic;
+    }
+
+    @Override
+    public void copy(Path source, Path target) throws IOException {
+        //a symbolic link replacing its own target would point to itself
+        if (FileCopier.isSameFile(source, target)) {
+            return;
+        }
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            Files.delete(target);
+        }
+        if (symbolic) {
+            Files.createSymbolicLink(target, source.toAbsolutePath());
+            return;
+        }
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
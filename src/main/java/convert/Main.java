@@ -1,17 +1,27 @@
 package convert;
 
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
- * Main entry point.
+ * Main entry point. Global options (see {@link #parseOptions(String[])}) may be given anywhere.
  * <ul>
  *     <li>merge oldPath newPath</li>
+ *     <li>mergeMany [--byTimestamp] oldestPath ... newestPath</li>
  *     <li>mergeDocker rootPath</li>
- *     <li>copyFiles filePath</li>
+ *     <li>watchDocker rootPath</li>
+ *     <li>copyFiles [--dryRun] filePath</li>
+ *     <li>verifyFiles filePath</li>
+ *     <li>migrateFiles directoryPath</li>
  *     <li>test directoryPath</li>
  * </ul>
  */
 public class Main {
 
     public static void main(String[] args) {
+        args = parseOptions(args);
         if (args.length <= 1) {
             System.out.println("Specify arguments first");
             return;
@@ -19,10 +29,29 @@ public class Main {
         String type = args[0];
         if (type.equalsIgnoreCase("merge")) {
             new JsonMerger(args[1], args[2]).merge();
+        } else if (type.equalsIgnoreCase("mergeMany")) {
+            boolean byTimestamp = args[1].equals("--byTimestamp");
+            if (args.length - (byTimestamp ? 2 : 1) < 2) {
+                System.out.println("Usage: mergeMany [--byTimestamp] oldestPath ... newestPath");
+                System.out.println("At least two paths are needed for merging.");
+                return;
+            }
+            JsonMerger merger = new JsonMerger(Arrays.asList(args).subList(byTimestamp ? 2 : 1, args.length));
+            merger.setByTimestamp(byTimestamp);
+            merger.merge();
         } else if (type.equals("mergeDocker")) {
             new DockerMerger(args[1]).merge();
+        } else if (type.equals("watchDocker")) {
+            new DockerMerger(args[1]).watch();
         } else if (type.equalsIgnoreCase("copyFiles")) {
-            new PathConverter(args[1], true).convert();
+            boolean dryRun = args[1].equals("--dryRun");
+            PathConverter converter = new PathConverter(args[dryRun ? 2 : 1], true);
+            converter.setDryRun(dryRun);
+            converter.convert();
+        } else if (type.equalsIgnoreCase("verifyFiles")) {
+            new PathConverter(args[1], true).verify();
+        } else if (type.equalsIgnoreCase("migrateFiles")) {
+            new LayoutMigrator(args[1]).migrate();
         } else if (type.equalsIgnoreCase("test")) {
             new Tester(args[1]).test();
         } else {
@@ -30,4 +59,58 @@ public class Main {
         }
 
     }
+
+    /**
+     * Applies and removes the global options.
+     * <ul>
+     *     <li>--copy=name: copies the test files with the {@link CopyStrategy} of the name</li>
+     *     <li>--dedup: same as --copy=dedup</li>
+     *     <li>--imageCache=directory: caches the rendered bpmn images in the directory</li>
+     *     <li>--layout=name: creates the files directory in the {@link FileLayout} of the name</li>
+     *     <li>--archive[=grouping]: packs the files into zip archives, see {@link ArchiveLayout}</li>
+     *     <li>--shards[=grouping]: splits the engine dependent tests into shards, see {@link DatasetShards}</li>
+     *     <li>--output=profile: writes the json files with the {@link JsonArrayWriter.Profile} of the name</li>
+     *     <li>--runThreads=n: converts at most n run folders of mergeDocker at the same time</li>
+     *     <li>--ioConcurrency=n: runs at most n file operations of the {@link IoExecutor} at the same time</li>
+     * </ul>
+     *
+     * @param args the command line arguments
+     * @return the arguments without the global options
+     */
+    private static String[] parseOptions(String[] args) {
+        List<String> arguments = new ArrayList<>();
+        String archive = null;
+        for (String arg : args) {
+            if (arg.equals("--dedup")) {
+                FileCopier.setStrategy(CopyStrategy.forName("dedup"));
+            } else if (arg.startsWith("--copy=")) {
+                FileCopier.setStrategy(CopyStrategy.forName(arg.substring("--copy=".length())));
+            } else if (arg.startsWith("--layout=")) {
+                FileLayout.set(FileLayout.forName(arg.substring("--layout=".length())));
+            } else if (arg.startsWith("--imageCache=")) {
+                BpmnRenderer.setCacheDirectory(Paths.get(arg.substring("--imageCache=".length())));
+            } else if (arg.equals("--archive")) {
+                archive = "engine";
+            } else if (arg.startsWith("--archive=")) {
+                archive = arg.substring("--archive=".length());
+            } else if (arg.equals("--shards")) {
+                DatasetShards.setGrouping("engine");
+            } else if (arg.startsWith("--shards=")) {
+                DatasetShards.setGrouping(arg.substring("--shards=".length()));
+            } else if (arg.startsWith("--output=")) {
+                JsonArrayWriter.setProfile(JsonArrayWriter.Profile.forName(arg.substring("--output=".length())));
+            } else if (arg.startsWith("--runThreads=")) {
+                DockerMerger.setParallelism(Integer.parseInt(arg.substring("--runThreads=".length())));
+            } else if (arg.startsWith("--ioConcurrency=")) {
+                IoExecutor.setConcurrency(Integer.parseInt(arg.substring("--ioConcurrency=".length())));
+            } else {
+                arguments.add(arg);
+            }
+        }
+        if (archive != null) {
+            //the entries of the archives keep the layout given with --layout
+            FileLayout.set(ArchiveLayout.forName(FileLayout.get(), archive));
+        }
+        return arguments.toArray(new String[arguments.size()]);
+    }
 }
@@ -0,0 +1,231 @@
+package convert;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sidecar index of a merged json file (&lt;file&gt;.idx).<br>
+ * Maps the key of every element to the fingerprint of its content and to its byte region in the json file, so that
+ * a later merge only has to parse the newer file and can copy the untouched elements of the older file as raw bytes.
+ * <p>
+ * Format: one line per element "offset TAB length TAB fingerprint TAB first key part TAB second key part", in the
+ * order of the json file. The last line "#TAB size TAB lastModified" stamps the json file the index belongs to.
+ */
+public class MergeIndex {
+
+    /**
+     * suffix of the index file.
+     */
+    public static final String SUFFIX = ".idx";
+
+    /**
+     * Region and fingerprint of an element.
+     */
+    public static final class Entry {
+
+        /**
+         * key of the element.
+         */
+        public final TestKey key;
+
+        /**
+         * byte offset of the element in the json file.
+         */
+        public final long offset;
+
+        /**
+         * byte length of the element.
+         */
+        public final int length;
+
+        /**
+         * fingerprint of the content of the element.
+         */
+        public final String fingerprint;
+
+        Entry(TestKey key, long offset, int length, String fingerprint) {
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * the entries in the order of the json file, including the duplicates of a key.
+     */
+    private final List<Entry> entries;
+
+    /**
+     * the first entry of every key.
+     */
+    private final Map<TestKey, Entry> byKey = new HashMap<>();
+
+    private MergeIndex(List<Entry> entries) {
+        this.entries = entries;
+        for (Entry entry : entries) {
+            byKey.putIfAbsent(entry.key, entry);
+        }
+    }
+
+    /**
+     * @param key of the element
+     * @return the first entry of the element, or null if the key is not in the index
+     */
+    public Entry get(TestKey key) {
+        return byKey.get(key);
+    }
+
+    /**
+     * @return the entries in the order of the json file, duplicates of a key are kept like in the json file
+     */
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Loads the index of the json file.
+     *
+     * @param jsonFile the index belongs to
+     * @return the index, or null if there is no index or it does not match the current json file
+     */
+    public static MergeIndex load(String jsonFile) {
+        Path json = Paths.get(jsonFile);
+        Path indexPath = Paths.get(jsonFile + SUFFIX);
+        if (!Files.isRegularFile(indexPath) || !Files.isRegularFile(json)) {
+            return null;
+        }
+        List<Entry> entries = new ArrayList<>();
+        String stamp = null;
+        try (BufferedReader reader = Files.newBufferedReader(indexPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    stamp = line;
+                    continue;
+                }
+                String[] parts = line.split("\t", -1);
+                entries.add(new Entry(TestKey.of(parts[3], parts[4]), Long.parseLong(parts[0]),
+                        Integer.parseInt(parts[1]), parts[2]));
+            }
+            if (stamp == null || !stamp.equals(stamp(json))) {
+                System.out.println("Ignoring outdated index " + indexPath);
+                return null;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not read index " + indexPath + ": " + e.getMessage());
+            return null;
+        }
+        return new MergeIndex(entries);
+    }
+
+    /**
+     * Computes the fingerprint of a serialized element.
+     *
+     * @param element the bytes of the element
+     * @return the fingerprint
+     */
+    public static String fingerprint(byte[] element) {
+        try {
+            return Base64.getEncoder().withoutPadding().encodeToString(MessageDigest.getInstance("SHA-1").digest(element));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String stamp(Path json) throws IOException {
+        return "#\t" + Files.size(json) + "\t" + Files.getLastModifiedTime(json).toMillis();
+    }
+
+    /**
+     * Writes the index of a json file while the json file is written.
+     */
+    public static class Writer implements Closeable {
+
+        /**
+         * the json file the index belongs to.
+         */
+        private final Path json;
+
+        /**
+         * the index file.
+         */
+        private final Path indexPath;
+
+        /**
+         * the temporary index file written until {@link #commit()}.
+         */
+        private final Path tmpPath;
+
+        private final BufferedWriter writer;
+
+        private boolean committed;
+
+        /**
+         * Constructor.
+         *
+         * @param jsonFile the index belongs to
+         * @throws IOException when the index could not be created
+         */
+        public Writer(String jsonFile) throws IOException {
+            this.json = Paths.get(jsonFile);
+            this.indexPath = Paths.get(jsonFile + SUFFIX);
+            this.tmpPath = Paths.get(jsonFile + SUFFIX + ".tmp");
+            this.writer = Files.newBufferedWriter(tmpPath, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Adds an element.
+         *
+         * @param key         of the element
+         * @param offset      byte offset of the element in the json file
+         * @param length      byte length of the element
+         * @param fingerprint of the element
+         * @throws IOException when the index could not be written
+         */
+        public void add(TestKey key, long offset, int length, String fingerprint) throws IOException {
+            writer.write(offset + "\t" + length + "\t" + fingerprint + "\t" + key.first() + "\t" + key.second());
+            writer.newLine();
+        }
+
+        /**
+         * Stamps the index with the json file and moves it in place. To be called after the json file is closed.
+         *
+         * @throws IOException when the index could not be written
+         */
+        public void commit() throws IOException {
+            writer.write(stamp(json));
+            writer.newLine();
+            writer.close();
+            Files.move(tmpPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        /**
+         * Discards the index if it was not committed.
+         *
+         * @throws IOException when the temporary index could not be deleted
+         */
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                writer.close();
+                Files.deleteIfExists(tmpPath);
+            }
+        }
+    }
+}
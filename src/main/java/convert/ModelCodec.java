@@ -0,0 +1,228 @@
+package convert;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts the json files from and to the in-memory model: {@link Test}, {@link Engine} and
+ * {@link FeatureTreeNode}.<br>
+ * Decoding takes the typed properties out of the json object, the remaining properties are kept as serialized json.
+ * Encoding puts them back, so a decoded and encoded object is written exactly like the original.
+ */
+public final class ModelCodec {
+
+    private ModelCodec() {
+    }
+
+    /**
+     * Decodes a test of the tests-engine-dependent.json or tests-engine-independent.json.<br>
+     * The typed properties are removed from the object.
+     *
+     * @param obj test to be decoded
+     * @return the test
+     */
+    public static Test decodeTest(JSONObject obj) {
+        String featureId = removeString(obj, Constants.FEATURE_ID_TOKEN);
+        String engineId = removeString(obj, Constants.ENGINE_ID_TOKEN);
+        Object timestamp = obj.opt(Constants.EXECUTION_TIMESTAMP_TOKEN);
+        long executionTimestamp = Test.NO_TIMESTAMP;
+        if (timestamp instanceof Integer || timestamp instanceof Long) {
+            executionTimestamp = ((Number) obj.remove(Constants.EXECUTION_TIMESTAMP_TOKEN)).longValue();
+        }
+        FileList engineDependentFiles = removeFiles(obj, Constants.ENGINE_DEPENDENT_FILES_TOKEN);
+        FileList engineIndependentFiles = removeFiles(obj, Constants.ENGINE_INDEPENDENT_FILES_TOKEN);
+        FileList logFiles = removeFiles(obj, Constants.LOG_FILES_TOKEN);
+        Test test = new Test(featureId, engineId, executionTimestamp, payload(obj));
+        test.setEngineDependentFiles(engineDependentFiles);
+        test.setEngineIndependentFiles(engineIndependentFiles);
+        test.setLogFiles(logFiles);
+        return test;
+    }
+
+    /**
+     * Encodes a test.
+     *
+     * @param test to be encoded
+     * @return the json object of the test
+     */
+    public static JSONObject encode(Test test) {
+        JSONObject obj = payload(test.getPayload());
+        if (test.getFeatureId() != null) {
+            obj.put(Constants.FEATURE_ID_TOKEN, test.getFeatureId());
+        }
+        if (test.getEngineId() != null) {
+            obj.put(Constants.ENGINE_ID_TOKEN, test.getEngineId());
+        }
+        if (test.getExecutionTimestamp() != Test.NO_TIMESTAMP) {
+            obj.put(Constants.EXECUTION_TIMESTAMP_TOKEN, test.getExecutionTimestamp());
+        }
+        putFiles(obj, Constants.ENGINE_DEPENDENT_FILES_TOKEN, test.getEngineDependentFiles());
+        putFiles(obj, Constants.ENGINE_INDEPENDENT_FILES_TOKEN, test.getEngineIndependentFiles());
+        putFiles(obj, Constants.LOG_FILES_TOKEN, test.getLogFiles());
+        return obj;
+    }
+
+    /**
+     * Decodes an engine of the engines.json. The id is removed from the object.
+     *
+     * @param obj engine to be decoded
+     * @return the engine
+     */
+    public static Engine decodeEngine(JSONObject obj) {
+        String id = removeString(obj, Constants.ID_TOKEN);
+        return new Engine(id, payload(obj));
+    }
+
+    /**
+     * Encodes an engine.
+     *
+     * @param engine to be encoded
+     * @return the json object of the engine
+     */
+    public static JSONObject encode(Engine engine) {
+        JSONObject obj = payload(engine.getPayload());
+        if (engine.getId() != null) {
+            obj.put(Constants.ID_TOKEN, engine.getId());
+        }
+        return obj;
+    }
+
+    /**
+     * Decodes a node of the feature-tree.json and its children. The id and the children are removed from the
+     * object.
+     *
+     * @param obj   node to be decoded
+     * @param level of the node, 0 for capabilities
+     * @return the node
+     */
+    public static FeatureTreeNode decodeFeatureTreeNode(JSONObject obj, int level) {
+        String id = removeString(obj, Constants.ID_TOKEN);
+        List<FeatureTreeNode> children = null;
+        if (level < Constants.FEATURE_TREE_LEVELS.length
+                && obj.opt(Constants.FEATURE_TREE_LEVELS[level]) instanceof JSONArray) {
+            JSONArray childArray = (JSONArray) obj.remove(Constants.FEATURE_TREE_LEVELS[level]);
+            children = new ArrayList<>(childArray.length());
+            for (int i = 0; i < childArray.length(); i++) {
+                children.add(decodeFeatureTreeNode(childArray.getJSONObject(i), level + 1));
+            }
+        }
+        FeatureTreeNode node = new FeatureTreeNode(id, level, payload(obj));
+        node.setChildren(children);
+        return node;
+    }
+
+    /**
+     * Encodes a node of the feature tree and its children.
+     *
+     * @param node to be encoded
+     * @return the json object of the node
+     */
+    public static JSONObject encode(FeatureTreeNode node) {
+        JSONObject obj = payload(node.getPayload());
+        if (node.getId() != null) {
+            obj.put(Constants.ID_TOKEN, node.getId());
+        }
+        if (node.getChildren() != null) {
+            JSONArray children = new JSONArray();
+            node.getChildren().forEach(child -> children.put(encode(child)));
+            obj.put(node.getChildrenToken(), children);
+        }
+        return obj;
+    }
+
+    /**
+     * Reads the tests of a tests-engine-dependent.json or tests-engine-independent.json.
+     *
+     * @param filePath to be read
+     * @return the tests, the tests read so far in case of an error
+     */
+    public static List<Test> readTests(String filePath) {
+        List<Test> tests = new ArrayList<>();
+        Identifiers.open();
+        try {
+            JsonArrayReader.forEach(filePath, obj -> tests.add(decodeTest(obj)));
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            Identifiers.close();
+        }
+        return tests;
+    }
+
+    /**
+     * Reads the engines of an engines.json.
+     *
+     * @param filePath to be read
+     * @return the engines, the engines read so far in case of an error
+     */
+    public static List<Engine> readEngines(String filePath) {
+        List<Engine> engines = new ArrayList<>();
+        Identifiers.open();
+        try {
+            JsonArrayReader.forEach(filePath, obj -> engines.add(decodeEngine(obj)));
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            Identifiers.close();
+        }
+        return engines;
+    }
+
+    /**
+     * Reads the capabilities of a feature-tree.json.
+     *
+     * @param filePath to be read
+     * @return the capabilities, the capabilities read so far in case of an error
+     */
+    public static List<FeatureTreeNode> readFeatureTree(String filePath) {
+        List<FeatureTreeNode> capabilities = new ArrayList<>();
+        Identifiers.open();
+        try {
+            JsonArrayReader.forEach(filePath, obj -> capabilities.add(decodeFeatureTreeNode(obj, 0)));
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            Identifiers.close();
+        }
+        return capabilities;
+    }
+
+    private static String removeString(JSONObject obj, String token) {
+        return obj.opt(token) instanceof String ? (String) obj.remove(token) : null;
+    }
+
+    private static FileList removeFiles(JSONObject obj, String token) {
+        Object files = obj.opt(token);
+        if (!(files instanceof JSONArray)) {
+            return null;
+        }
+        JSONArray array = (JSONArray) files;
+        for (int i = 0; i < array.length(); i++) {
+            if (!(array.opt(i) instanceof String)) {
+                //not a list of paths, kept as it is
+                return null;
+            }
+        }
+        obj.remove(token);
+        return FileList.of(array);
+    }
+
+    private static void putFiles(JSONObject obj, String token, FileList files) {
+        if (files != null) {
+            obj.put(token, files.toJSONArray());
+        }
+    }
+
+    private static byte[] payload(JSONObject rest) {
+        return rest.length() == 0 ? null : rest.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static JSONObject payload(byte[] payload) {
+        return payload == null ? new JSONObject() : new JSONObject(new String(payload, StandardCharsets.UTF_8));
+    }
+}
@@ -1,146 +1,293 @@
 package convert;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class PathConverter {
 
+    private static final ConcurrentMap<String, Object> DIRECTORY_LOCKS = new ConcurrentHashMap<>();
+
     private final String jsonFile;
     private final boolean keepCopy;
 
+    /**
+     * true when the copy plan is only printed, nothing is written.
+     */
+    private boolean dryRun;
+
+    /**
+     * the copies scheduled while the json file is rewritten.
+     */
+    private final CopyPlan plan = new CopyPlan();
+
+    /**
+     * the distinct bpmn files whose images are referenced by the rewritten json file.
+     */
+    private final Set<Path> bpmnFiles = new LinkedHashSet<>();
+
     public PathConverter(String jsonFile, boolean keepCopy) {
         this.jsonFile = jsonFile;
         this.keepCopy = keepCopy;
     }
 
-    public final void convert() {
+    /**
+     * Prints the copy plan instead of copying the files and rewriting the json file.
+     *
+     * @param dryRun true to only print the copy plan
+     */
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Converts the json file, resuming an interrupted conversion.
+     *
+     * @return false if the json file could not be converted, it keeps its old paths then
+     */
+    public final boolean convert() {
         System.out.println("Converting: " + jsonFile);
         String parentFile = new File(jsonFile).getAbsoluteFile().getParentFile().toString();
-        if (new File(parentFile + File.separator + "files").exists()) {
+        //json files of the same directory share the files directory, so they are converted one after another
+        synchronized (DIRECTORY_LOCKS.computeIfAbsent(parentFile, k -> new Object())) {
+            return convert(parentFile);
+        }
+    }
+
+    private boolean convert(String parentFile) {
+        Path source = Paths.get(jsonFile);
+        Path converted = Paths.get(jsonFile + ".tmp");
+        boolean resume = Files.exists(ConversionJournal.journalFile(source)) && !dryRun;
+        if (new File(parentFile + File.separator + "files").exists() && !resume) {
             System.out.println(new File(parentFile + File.separator + "files"));
             System.out.println("Files directory already exists. Do not copy anything.");
-            return;
+            return true;
         }
-        if (keepCopy) {
+        if (resume) {
+            return convert(parentFile, source, converted, true);
+        }
+        if (keepCopy && !dryRun) {
             try {
-                Files.copy(Paths.get(jsonFile), Paths.get(parentFile + File.separator + "orig-" + new File(jsonFile)
-                        .getName()), StandardCopyOption.REPLACE_EXISTING);
+                backup(Paths.get(jsonFile), Paths.get(parentFile + File.separator + "orig-" + new File(jsonFile)
+                        .getName()));
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
         File filePath = new File(parentFile + File.separator + "files");
-        if (!filePath.mkdir()) {
+        if (!dryRun && !filePath.mkdir()) {
             System.err.println("Could not setup files directory '" + filePath + "'");
         }
-        List<String> lines;
-        try {
-            lines = Files.readAllLines(Paths.get(jsonFile));
-        } catch (IOException e) {
-            e.printStackTrace();
-            lines = new ArrayList<>();
-        }
-        String fileContent = lines.parallelStream().reduce((s1, s2) -> s1 + s2).orElse("");
-        JSONArray outputArray = new JSONArray();
-        boolean write = true;
+        return convert(parentFile, source, converted, false);
+    }
+
+    /**
+     * Rewrites the paths of the json file and copies the files, journaling the progress.
+     *
+     * @param parentFile path to the directory where the json file is
+     * @param source     the json file
+     * @param converted  the rewritten json file
+     * @param resume     true to resume the conversion of the existing journal
+     * @return false if the json file could not be converted
+     */
+    private boolean convert(String parentFile, Path source, Path converted, boolean resume) {
+        boolean dependent;
         if (jsonFile.contains("tests-engine-dependent.json")) {
-            outputArray = copyEngineDependentFiles(parentFile, fileContent);
+            dependent = true;
         } else if (jsonFile.contains("tests-engine-independent.json")) {
-            outputArray = getCopyEngineIndependentFiles(parentFile, fileContent);
-
+            dependent = false;
         } else {
             System.out.println("The file is not a engine dependent or independent file.");
-            write = false;
+            return false;
         }
 
-        try {
-            if (write) {
-                Files.write(Paths.get(jsonFile), outputArray.toString(1).getBytes());
+        //the paths are rewritten first, then the files are copied in parallel and finally the json is replaced
+        try (ConversionJournal journal = dryRun ? null
+                : resume ? ConversionJournal.resume(source) : ConversionJournal.create(source)) {
+            if (resume) {
+                if (journal.isConverted()) {
+                    //interrupted after the copies, only the json file might have to be moved in place
+                    if (Files.exists(converted)) {
+                        replace(converted, source);
+                    }
+                    System.out.println("Conversion already completed.");
+                    return true;
+                }
+                List<Path> invalid = journal.verify();
+                System.out.println("Resuming conversion, " + journal.copies() + " files copied, " + invalid.size()
+                        + " journaled files are missing or incomplete.");
             }
+            int tests = 0;
+            try (JsonArrayReader in = new JsonArrayReader(source);
+                 JsonArrayWriter out = dryRun ? null : new JsonArrayWriter(converted)) {
+                JSONObject obj;
+                while ((obj = in.next()) != null) {
+                    Test test = ModelCodec.decodeTest(obj);
+                    if (dependent) {
+                        copyEngineDependentFiles(parentFile, test);
+                    } else {
+                        copyEngineIndependentFiles(parentFile, test);
+                    }
+                    if (out != null) {
+                        out.write(ModelCodec.encode(test));
+                    }
+                    tests++;
+                }
+            }
+            if (dryRun) {
+                System.out.println("Dry run, " + bpmnFiles.size() + " bpmn processes would be rendered.");
+                plan.print(System.out);
+                return true;
+            }
+            BpmnRenderer.render(bpmnFiles);
+            bpmnFiles.clear();
+            int failed = plan.execute(journal);
+            if (failed > 0) {
+                //the json keeps its old paths, running the conversion again resumes it and retries the failed copies
+                System.err.println("Could not convert " + jsonFile);
+                System.err.println("Reason: " + failed
+                        + " files could not be copied, run the conversion again to retry them.");
+                return false;
+            }
+            journal.converted(tests);
+            replace(converted, source);
+            return true;
         } catch (IOException e) {
             System.err.println("Could not write " + jsonFile);
+            System.err.println("Reason: " + e.getMessage());
+            return false;
         }
     }
 
-    private JSONArray getCopyEngineIndependentFiles(String parentFile, String fileContent) {
-        JSONArray inputArray = new JSONArray(fileContent);
-        JSONArray outputArray = new JSONArray();
-        for (int i = 0; i < inputArray.length(); i++) {
-            JSONObject obj = inputArray.getJSONObject(i);
-            String featureId = obj.getString(Constants.FEATURE_ID_TOKEN);
+    /**
+     * Checks the files copied according to the journal of the json file against the files on disk.
+     *
+     * @return the number of journaled files that are missing or have another size, -1 if there is no journal
+     */
+    public int verify() {
+        Path source = Paths.get(jsonFile);
+        if (!Files.exists(ConversionJournal.journalFile(source))) {
+            System.out.println("No journal for " + jsonFile);
+            return -1;
+        }
+        try (ConversionJournal journal = ConversionJournal.resume(source)) {
+            List<Path> invalid = journal.verify();
+            invalid.forEach(p -> System.out.println("Missing or incomplete: " + p));
+            System.out.println("Verified " + (journal.copies() + invalid.size()) + " files, " + invalid.size()
+                    + " are missing or incomplete" + (journal.isConverted() ? "." : ", the conversion is not completed."));
+            return invalid.size();
+        } catch (IOException e) {
+            System.err.println("Could not read the journal of " + jsonFile);
+            System.err.println("Reason: " + e.getMessage());
+            return -1;
+        }
+    }
 
-            JSONArray engineIndependentArrayOutput = copyEngineIndependentFiles(parentFile, obj
-                    .getJSONArray(Constants.ENGINE_INDEPENDENT_FILES_TOKEN), featureId);
-            obj.remove(Constants.ENGINE_INDEPENDENT_FILES_TOKEN);
-            obj.put(Constants.ENGINE_INDEPENDENT_FILES_TOKEN, engineIndependentArrayOutput);
+    /**
+     * Keeps the original json file as backup. The backup is a hard link to the original, which stays untouched
+     * because the rewritten json file replaces it by a move. Falls back to a copy when the file system does not
+     * support hard links.
+     *
+     * @param original json file
+     * @param backup   to be created
+     * @throws IOException when the backup could not be created
+     */
+    private static void backup(Path original, Path backup) throws IOException {
+        Files.deleteIfExists(backup);
+        try {
+            Files.createLink(backup, original);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(original, backup, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
-            outputArray.put(obj);
+    /**
+     * Replaces the json file by the rewritten one, atomically if the file system supports it, so that an
+     * interrupted conversion leaves either the old or the new json file. The compressed copy of the rewritten
+     * file, if any, is moved along.
+     *
+     * @param converted the rewritten json file, in the same directory
+     * @param jsonFile  to be replaced
+     * @throws IOException when the file could not be replaced
+     */
+    private static void replace(Path converted, Path jsonFile) throws IOException {
+        try {
+            JsonArrayWriter.move(converted, jsonFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            JsonArrayWriter.move(converted, jsonFile, StandardCopyOption.REPLACE_EXISTING);
         }
-        return outputArray;
     }
 
     /**
-     * Copies the engine dependent files and replaces the file paths in the json file
+     * Copies the engine independent files and replaces the file paths in the test
      *
-     * @param parentFile  path to the directory where the json file is
-     * @param fileContent content of the json file
+     * @param parentFile path to the directory where the json file is
+     * @param test       engine independent test to be converted
      */
-    private JSONArray copyEngineDependentFiles(String parentFile, String fileContent) {
-        JSONArray inputArray = new JSONArray(fileContent);
-        JSONArray outputArray = new JSONArray();
-        for (int i = 0; i < inputArray.length(); i++) {
-            JSONObject obj = inputArray.getJSONObject(i);
-            String engine = obj.getString(Constants.ENGINE_ID_TOKEN);
-            String featureId = obj.getString(Constants.FEATURE_ID_TOKEN);
+    private void copyEngineIndependentFiles(String parentFile, Test test) {
+        if (test.getEngineIndependentFiles() != null) {
+            test.setEngineIndependentFiles(FileList.of(copyEngineIndependentFiles(parentFile,
+                    new ArrayList<>(test.getEngineIndependentFiles()), test.getFeatureId())));
+        }
+    }
 
-            JSONArray engineDependentArrayOutput = copyEngineDependentFiles(parentFile, obj
-                    .getJSONArray(Constants.ENGINE_DEPENDENT_FILES_TOKEN), engine, featureId);
-            obj.remove(Constants.ENGINE_DEPENDENT_FILES_TOKEN);
-            obj.put(Constants.ENGINE_DEPENDENT_FILES_TOKEN, engineDependentArrayOutput);
+    /**
+     * Copies the engine dependent files and replaces the file paths in the test
+     *
+     * @param parentFile path to the directory where the json file is
+     * @param test       engine dependent test to be converted
+     */
+    private void copyEngineDependentFiles(String parentFile, Test test) {
+        String engine = test.getEngineId();
+        String featureId = test.getFeatureId();
 
-            JSONArray logFileArrayOutput = copyLogFiles(parentFile, obj.getJSONArray(Constants.LOG_FILES_TOKEN), engine, featureId);
-            obj.remove(Constants.LOG_FILES_TOKEN);
-            obj.put(Constants.LOG_FILES_TOKEN, logFileArrayOutput);
-            outputArray.put(obj);
+        if (test.getEngineDependentFiles() != null) {
+            test.setEngineDependentFiles(FileList.of(copyEngineDependentFiles(parentFile,
+                    new ArrayList<>(test.getEngineDependentFiles()), engine, featureId)));
+        }
+        if (test.getLogFiles() != null) {
+            test.setLogFiles(FileList.of(copyLogFiles(parentFile, test.getLogFiles(), engine, featureId)));
         }
-        return outputArray;
     }
 
     /**
      * Copies the engine dependent files from the original destination to the new destination.<br>
-     * Path is : parentFile/files/logs/<engine>/<feature>Id
+     * Path is : parentFile/&lt;directory of the {@link FileLayout}&gt;
      *
      * @param parentFile                  path to the directory where the original json file is.
      * @param engineIndependentArrayInput the original files to be changed
      * @param featureId                   of the test with the files to be changed
-     * @return the changed files as an JsonArray
+     * @return the changed files
      */
-    private JSONArray copyEngineIndependentFiles(String parentFile, JSONArray engineIndependentArrayInput,
-                                                 String featureId) {
+    private List<String> copyEngineIndependentFiles(String parentFile, List<String> engineIndependentArrayInput,
+                                                    String featureId) {
 
 
-        JSONArray engineIndependentArrayOutput = new JSONArray();
-        for (int j = 0; j < engineIndependentArrayInput.length(); j++) {
-            String oldPath = engineIndependentArrayInput.getString(j);
+        List<String> engineIndependentArrayOutput = new ArrayList<>();
+        for (int j = 0; j < engineIndependentArrayInput.size(); j++) {
+            String oldPath = engineIndependentArrayInput.get(j);
             if ((parentFile.endsWith(File.separator + "test") || parentFile.endsWith("\\" + "test")) && oldPath.startsWith("test")) {
                 oldPath = oldPath.replace("test" + File.separator, "").replace("test" + "\\", "");
             }
             if (oldPath.endsWith(".bpmn")) {
-                engineIndependentArrayInput.put(createBPMNImage(parentFile, oldPath));
+                engineIndependentArrayInput.add(createBPMNImage(parentFile, oldPath));
             }
-            String newPath = "files" + File.separator + "engineIndependent" + File.separator + Math.abs(featureId.hashCode());
-            newPath += File.separator + oldPath.substring(convertToPath(oldPath).lastIndexOf(File.separator) + 1);
+            String newPath = FileLayout.get().path(FileLayout.ENGINE_INDEPENDENT, null, featureId,
+                    oldPath.substring(convertToPath(oldPath).lastIndexOf(File.separator) + 1));
 
-            if (copyFile(parentFile, oldPath, newPath)) engineIndependentArrayOutput.put(newPath);
+            if (scheduleCopy(parentFile, oldPath, newPath)) engineIndependentArrayOutput.add(newPath);
 
 
         }
@@ -149,22 +296,22 @@ public class PathConverter {
 
     /**
      * Copies the log files from the original destination to the new destination.<br>
-     * Path is : parentFile/files/logs/<engine>/<feature>Id
+     * Path is : parentFile/&lt;directory of the {@link FileLayout}&gt;
      *
      * @param parentFile        path to the directory where the original json file is.
      * @param logFileArrayInput the original lof files to be changed
      * @param engine            of the test with the lof files to be changed
      * @param featureId         of the test with the log files to be changed
-     * @return the changed log files as an JsonArray
-     */
-    private JSONArray copyLogFiles(String parentFile, JSONArray logFileArrayInput, String engine, String featureId) {
-        JSONArray logFileArrayOutput = new JSONArray();
-        for (int i = 0; i < logFileArrayInput.length(); i++) {
-            String p = logFileArrayInput.getString(i);
-            String newPath = "files" + File.separator + "logs" + File.separator + engine + File.separator + Math.abs(featureId.hashCode()) + File.separator;
-            newPath += p.substring(convertToPath(p).lastIndexOf(File.separator) + 1);
-            if (copyFile(parentFile, p, newPath)) {
-                logFileArrayOutput.put(newPath);
+     * @return the changed log files
+     */
+    private List<String> copyLogFiles(String parentFile, List<String> logFileArrayInput, String engine, String featureId) {
+        List<String> logFileArrayOutput = new ArrayList<>();
+        for (int i = 0; i < logFileArrayInput.size(); i++) {
+            String p = logFileArrayInput.get(i);
+            String newPath = FileLayout.get().path(FileLayout.LOGS, engine, featureId,
+                    p.substring(convertToPath(p).lastIndexOf(File.separator) + 1));
+            if (scheduleCopy(parentFile, p, newPath)) {
+                logFileArrayOutput.add(newPath);
             }
         }
         return logFileArrayOutput;
@@ -172,71 +319,64 @@ public class PathConverter {
 
     /**
      * Copies the engine dependent files from the original destination to the new destination.<br>
-     * Path is : parentFile/files/logs/<engine>/<feature>Id
+     * Path is : parentFile/&lt;directory of the {@link FileLayout}&gt;
      *
      * @param parentFile                path to the directory where the original json file is.
      * @param engineDependentArrayInput the original files to be changed
      * @param engine                    of the test with the files to be changed
      * @param featureId                 of the test with the files to be changed
-     * @return the changed files as an JsonArray
+     * @return the changed files
      */
-    private JSONArray copyEngineDependentFiles(String parentFile, JSONArray engineDependentArrayInput, String engine,
-                                               String featureId) {
-        JSONArray engineDependentArrayOutput = new JSONArray();
-        for (int j = 0; j < engineDependentArrayInput.length(); j++) {
-            String oldPath = engineDependentArrayInput.getString(j);
+    private List<String> copyEngineDependentFiles(String parentFile, List<String> engineDependentArrayInput,
+                                                  String engine, String featureId) {
+        List<String> engineDependentArrayOutput = new ArrayList<>();
+        for (int j = 0; j < engineDependentArrayInput.size(); j++) {
+            String oldPath = engineDependentArrayInput.get(j);
             if ((parentFile.endsWith(File.separator + "test") || parentFile.endsWith("\\" + "test")) && oldPath.startsWith("test")) {
                 oldPath = oldPath.replace("test" + File.separator, "").replace("test" + "\\", "");
             }
             if (oldPath.endsWith(".bpmn")) {
-                engineDependentArrayInput.put(createBPMNImage(parentFile, oldPath));
+                engineDependentArrayInput.add(createBPMNImage(parentFile, oldPath));
             }
-            String newPath = "files" + File.separator + "engineDependent" + File.separator + engine + File.separator + Math.abs(featureId.hashCode());
-
-            newPath += File.separator + oldPath.substring(convertToPath(oldPath).lastIndexOf(File.separator) + 1);
-            if (copyFile(parentFile, oldPath, newPath))
-                engineDependentArrayOutput.put(newPath);
+            String newPath = FileLayout.get().path(FileLayout.ENGINE_DEPENDENT, engine, featureId,
+                    oldPath.substring(convertToPath(oldPath).lastIndexOf(File.separator) + 1));
+            if (scheduleCopy(parentFile, oldPath, newPath))
+                engineDependentArrayOutput.add(newPath);
         }
         return engineDependentArrayOutput;
     }
 
+    /**
+     * Schedules the rendering of the image of a bpmn file. The images are created by {@link BpmnRenderer} before
+     * the files are copied.
+     *
+     * @param parentDir the parent directory of the file
+     * @param oldPath   of the bpmn file
+     * @return the path of the image
+     */
     private String createBPMNImage(String parentDir, String oldPath) {
-        File bpmnFile = new File(convertToPath(parentDir + File.separator + oldPath));
-        String[] args = {bpmnFile.getParentFile().toString()};
-        try {
-            bpmnviz.Main.main(args);
-        } catch (IOException e) {
-
-        }
-        return oldPath + ".png";
+        bpmnFiles.add(Paths.get(convertToPath(parentDir + File.separator + oldPath)).normalize());
+        return oldPath + BpmnRenderer.IMAGE_SUFFIX;
     }
 
 
     /**
-     * Copies the file from the oldPath to the newPath in the specified parent directory
+     * Adds the copy of the file from the oldPath to the newPath in the specified parent directory to the
+     * {@link #plan}.
      *
      * @param parentDir the parent directory of the file
      * @param oldPath   to of the file to be copied
      * @param newPath   of the file to be copied
-     * @return true when copy was successfull, false otherwise
+     * @return true when copy was scheduled, false otherwise
      */
-    private boolean copyFile(String parentDir, String oldPath, String newPath) {
-        File f = new File(parentDir + File.separator + newPath).getParentFile();
-        if (!f.exists()) {
-            f.mkdirs();
-        }
+    private boolean scheduleCopy(String parentDir, String oldPath, String newPath) {
         if ((parentDir.endsWith(File.separator + "test") || parentDir.endsWith("\\" + "test")) && oldPath.startsWith("test")) {
             oldPath = oldPath.replace("test" + File.separator, "").replace("test" + "\\", "");
         }
         Path source = Paths.get(convertToPath(parentDir) + File.separator + convertToPath(oldPath));
         Path target = Paths.get(convertToPath(parentDir) + File.separator + convertToPath(newPath));
         if (!source.equals(target)) {
-            try {
-                Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
-            } catch (IOException e) {
-                System.err.println("Could not copy file: " + source.toString() + " -> " + target.toString());
-                System.err.println("Reason: " + e.getMessage());
-            }
+            plan.add(source, target);
         }
         return true;
     }
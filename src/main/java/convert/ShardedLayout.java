@@ -0,0 +1,67 @@
+package convert;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Sharded layout: files/&lt;category&gt;/[&lt;engine&gt;/]&lt;ab&gt;/&lt;cd&gt;/&lt;digest&gt;, where digest is the
+ * hex sha-1 digest of the featureID and ab, cd are its first two-character prefixes.<br>
+ * Every directory has at most 256 sub directories per level, independent of the number of features.
+ */
+public class ShardedLayout extends FileLayout {
+
+    /**
+     * number of prefix levels of the "sharded" layout.
+     */
+    public static final int DEFAULT_LEVELS = 2;
+
+    /**
+     * number of prefix directories above the digest directory.
+     */
+    private final int levels;
+
+    /**
+     * Constructor.
+     *
+     * @param levels number of prefix directories above the digest directory, 0 to 8
+     */
+    public ShardedLayout(int levels) {
+        if (levels < 0 || levels > 8) {
+            throw new IllegalArgumentException("The number of levels has to be between 0 and 8: " + levels);
+        }
+        this.levels = levels;
+    }
+
+    @Override
+    public String directory(String category, String engineId, String featureId) {
+        StringBuilder directory = new StringBuilder(FILES).append(File.separator).append(category);
+        if (!category.equals(ENGINE_INDEPENDENT)) {
+            directory.append(File.separator).append(engineId);
+        }
+        String digest = digest(featureId);
+        for (int i = 0; i < levels; i++) {
+            directory.append(File.separator).append(digest, 2 * i, 2 * i + 2);
+        }
+        return directory.append(File.separator).append(digest).toString();
+    }
+
+    /**
+     * @param featureId to be hashed
+     * @return the lower case hex sha-1 digest of the featureID
+     */
+    private static String digest(String featureId) {
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-1").digest(featureId.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,130 @@
+package convert;
+
+/**
+ * Compact in-memory form of a test of the tests-engine-dependent.json or tests-engine-independent.json.<br>
+ * The identifiers are pooled, the file paths are kept in {@link FileList}s and all other properties, e.g. the
+ * results of the test cases, are kept as serialized json until they are needed. See {@link ModelCodec} for the
+ * conversion from and to json.
+ */
+public final class Test {
+
+    /**
+     * value of {@link #getExecutionTimestamp()} when the test has no executionTimestamp.
+     */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    /**
+     * featureID of the test.
+     */
+    private final String featureId;
+
+    /**
+     * engineID of the test, null for engine independent tests.
+     */
+    private final String engineId;
+
+    /**
+     * executionTimestamp of the test, {@link #NO_TIMESTAMP} if there is none.
+     */
+    private final long executionTimestamp;
+
+    /**
+     * engineDependentFiles, null if the test has none.
+     */
+    private FileList engineDependentFiles;
+
+    /**
+     * engineIndependentFiles, null if the test has none.
+     */
+    private FileList engineIndependentFiles;
+
+    /**
+     * logFiles, null if the test has none.
+     */
+    private FileList logFiles;
+
+    /**
+     * all other properties as utf-8 json object, null if there are none.
+     */
+    private final byte[] payload;
+
+    /**
+     * Constructor.
+     *
+     * @param featureId          of the test
+     * @param engineId           of the test, null for engine independent tests
+     * @param executionTimestamp of the test, {@link #NO_TIMESTAMP} if there is none
+     * @param payload            all other properties as utf-8 json object, null if there are none
+     */
+    Test(String featureId, String engineId, long executionTimestamp, byte[] payload) {
+        this.featureId = Identifiers.intern(featureId);
+        this.engineId = Identifiers.intern(engineId);
+        this.executionTimestamp = executionTimestamp;
+        this.payload = payload;
+    }
+
+    public String getFeatureId() {
+        return featureId;
+    }
+
+    /**
+     * @return the engineID, null for engine independent tests
+     */
+    public String getEngineId() {
+        return engineId;
+    }
+
+    /**
+     * @return the executionTimestamp, {@link #NO_TIMESTAMP} if there is none
+     */
+    public long getExecutionTimestamp() {
+        return executionTimestamp;
+    }
+
+    /**
+     * @return the engineDependentFiles, null if the test has none
+     */
+    public FileList getEngineDependentFiles() {
+        return engineDependentFiles;
+    }
+
+    public void setEngineDependentFiles(FileList engineDependentFiles) {
+        this.engineDependentFiles = engineDependentFiles;
+    }
+
+    /**
+     * @return the engineIndependentFiles, null if the test has none
+     */
+    public FileList getEngineIndependentFiles() {
+        return engineIndependentFiles;
+    }
+
+    public void setEngineIndependentFiles(FileList engineIndependentFiles) {
+        this.engineIndependentFiles = engineIndependentFiles;
+    }
+
+    /**
+     * @return the logFiles, null if the test has none
+     */
+    public FileList getLogFiles() {
+        return logFiles;
+    }
+
+    public void setLogFiles(FileList logFiles) {
+        this.logFiles = logFiles;
+    }
+
+    /**
+     * @return all other properties as utf-8 json object, null if there are none
+     */
+    byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * @return the (featureID, engineID) key of engine dependent tests, the featureID key otherwise
+     */
+    public TestKey key() {
+        return TestKey.of(featureId, engineId == null ? "" : engineId);
+    }
+}
@@ -0,0 +1,121 @@
+package convert;
+
+import org.json.JSONObject;
+
+/**
+ * Composite key of a test object, used to index the json arrays in hash based collections.
+ * <ul>
+ * <li>tests-engine-dependent.json: featureID and engineID</li>
+ * <li>tests-engine-independent.json: featureID</li>
+ * <li>engines.json: id</li>
+ * </ul>
+ */
+public final class TestKey {
+
+    /**
+     * first part of the key, e.g. the featureID.
+     */
+    private final String first;
+
+    /**
+     * second part of the key, e.g. the engineID. empty for single part keys.
+     */
+    private final String second;
+
+    /**
+     * cached hash code.
+     */
+    private final int hash;
+
+    /**
+     * Constructor.
+     *
+     * @param first  part of the key
+     * @param second part of the key
+     */
+    private TestKey(String first, String second) {
+        this.first = Identifiers.intern(first);
+        this.second = Identifiers.intern(second);
+        this.hash = 31 * first.hashCode() + second.hashCode();
+    }
+
+    /**
+     * Creates a key from its parts.
+     *
+     * @param first  part of the key
+     * @param second part of the key, empty for single part keys
+     * @return the key
+     */
+    static TestKey of(String first, String second) {
+        return new TestKey(first, second);
+    }
+
+    /**
+     * Creates the key of an engine dependent test.
+     *
+     * @param test of the tests-engine-dependent.json
+     * @return the (featureID, engineID) key
+     */
+    public static TestKey ofEngineDependent(JSONObject test) {
+        return new TestKey(test.getString(Constants.FEATURE_ID_TOKEN), test.getString(Constants.ENGINE_ID_TOKEN));
+    }
+
+    /**
+     * Creates the key of an engine independent test.
+     *
+     * @param test of the tests-engine-independent.json
+     * @return the featureID key
+     */
+    public static TestKey ofEngineIndependent(JSONObject test) {
+        return new TestKey(test.getString(Constants.FEATURE_ID_TOKEN), "");
+    }
+
+    /**
+     * Creates the key of an engine.
+     *
+     * @param engine of the engines.json
+     * @return the id key
+     */
+    public static TestKey ofEngine(JSONObject engine) {
+        return new TestKey(engine.getString(Constants.ID_TOKEN), "");
+    }
+
+    /**
+     * @return the first part of the key
+     */
+    String first() {
+        return first;
+    }
+
+    /**
+     * @return the second part of the key, empty for single part keys
+     */
+    String second() {
+        return second;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TestKey)) {
+            return false;
+        }
+        TestKey other = (TestKey) o;
+        return hash == other.hash && first.equals(other.first) && second.equals(other.second);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * @return the key as printed in the merge reports, e.g. "featureID of engineID"
+     */
+    @Override
+    public String toString() {
+        return second.isEmpty() ? first : first + " of " + second;
+    }
+}
@@ -1,13 +1,11 @@
 package convert;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -21,24 +19,24 @@ public class Tester {
     private final String rootDir;
 
     /**
-     * Array of engines.json
+     * Engines of engines.json
      */
-    private JSONArray enginesArr;
+    private List<Engine> engines;
 
     /**
-     * Array of feature-tree.json
+     * Capabilities of feature-tree.json
      */
-    private JSONArray featureTreeArr;
+    private List<FeatureTreeNode> featureTree;
 
     /**
-     * Array of tests-engine-dependent.json
+     * Tests of tests-engine-dependent.json
      */
-    private JSONArray engineDependentArr;
+    private List<Test> engineDependentTests;
 
     /**
-     * Array of tests-engine-independent.json
+     * Tests of tests-engine-independent.json
      */
-    private JSONArray engineIndependentArr;
+    private List<Test> engineIndependentTests;
 
     /**
      * Constructor.
@@ -54,22 +52,7 @@ public class Tester {
      */
     public final void test() {
         System.out.println("testing: " + rootDir);
-        String enginesPath = rootDir + File.separator + "engines.json";
-        String featureTreePath = rootDir + File.separator + "feature-tree.json";
-        String engineDependentPath = rootDir + File.separator + "tests-engine-dependent.json";
-        String engineIndependentPath = rootDir + File.separator + "tests-engine-independent.json";
-        System.out.println("Reading " + enginesPath);
-        enginesArr = readFile(enginesPath);
-        System.out.println("Done reading.");
-        System.out.println("Reading " + featureTreePath);
-        featureTreeArr = readFile(featureTreePath);
-        System.out.println("Done reading.");
-        System.out.println("Reading " + engineDependentPath);
-        engineDependentArr = readFile(engineDependentPath);
-        System.out.println("Done reading.");
-        System.out.println("Reading " + engineIndependentPath);
-        engineIndependentArr = readFile(engineIndependentPath);
-        System.out.println("Done reading.");
+        readFiles();
 
         checkEngine();
 
@@ -83,43 +66,71 @@ public class Tester {
 
     }
 
+    /**
+     * Reads the json files of the {@link #rootDir}.
+     */
+    private void readFiles() {
+        String enginesPath = rootDir + File.separator + "engines.json";
+        String featureTreePath = rootDir + File.separator + "feature-tree.json";
+        String engineDependentPath = rootDir + File.separator + "tests-engine-dependent.json";
+        String engineIndependentPath = rootDir + File.separator + "tests-engine-independent.json";
+        //the engines, capabilities and tests share their identifiers
+        Identifiers.open();
+        try {
+            System.out.println("Reading " + enginesPath);
+            engines = ModelCodec.readEngines(enginesPath);
+            System.out.println("Done reading.");
+            System.out.println("Reading " + featureTreePath);
+            featureTree = ModelCodec.readFeatureTree(featureTreePath);
+            System.out.println("Done reading.");
+            System.out.println("Reading " + engineDependentPath);
+            engineDependentTests = ModelCodec.readTests(engineDependentPath);
+            System.out.println("Done reading.");
+            System.out.println("Reading " + engineIndependentPath);
+            engineIndependentTests = ModelCodec.readTests(engineIndependentPath);
+            System.out.println("Done reading.");
+        } finally {
+            Identifiers.close();
+        }
+    }
+
     /**
      * Checks the feature-tree
      */
     private void checkFeatureTree() {
         List<String> output = new ArrayList<>();
         output.add("Checking feature-tree.json...");
-        for (int i = 0; i < featureTreeArr.length(); i++) {
-            JSONObject capObj = featureTreeArr.getJSONObject(i);
-            JSONArray langArr = capObj.getJSONArray("languages");
-            if (langArr.length() == 0) {
-                output.add("Capability " + capObj.getString("id") + " has no languages.");
+        for (int i = 0; i < featureTree.size(); i++) {
+            FeatureTreeNode capObj = featureTree.get(i);
+            List<FeatureTreeNode> langArr = children(capObj);
+            if (langArr.size() == 0) {
+                output.add("Capability " + capObj.getId() + " has no languages.");
             }
             //language
-            for (int j = 0; j < langArr.length(); j++) {
-                JSONObject langObj = langArr.getJSONObject(i);
-                JSONArray groupArr = langObj.getJSONArray("groups");
-                if (groupArr.length() == 0) {
-                    output.add("Language " + capObj.getString("id") + " has no groups.");
+            for (int j = 0; j < langArr.size(); j++) {
+                FeatureTreeNode langObj = langArr.get(i);
+                List<FeatureTreeNode> groupArr = children(langObj);
+                if (groupArr.size() == 0) {
+                    output.add("Language " + capObj.getId() + " has no groups.");
                 }
                 //group
-                for (int k = 0; k < groupArr.length(); k++) {
-                    JSONObject groupObj = groupArr.getJSONObject(i);
-                    JSONArray constructsArr = groupObj.getJSONArray("constructs");
-                    if (constructsArr.length() == 0) {
-                        output.add("Group " + groupObj.getString("id") + " has no groups.");
+                for (int k = 0; k < groupArr.size(); k++) {
+                    FeatureTreeNode groupObj = groupArr.get(i);
+                    List<FeatureTreeNode> constructsArr = children(groupObj);
+                    if (constructsArr.size() == 0) {
+                        output.add("Group " + groupObj.getId() + " has no groups.");
                     }
                     //constructs
-                    for (int l = 0; l < constructsArr.length(); l++) {
-                        JSONObject constructsObj = constructsArr.getJSONObject(i);
-                        JSONArray featuresArr = constructsObj.getJSONArray("features");
-                        if (featuresArr.length() == 0) {
-                            output.add("Construct " + constructsObj.getString("id") + " has no groups.");
+                    for (int l = 0; l < constructsArr.size(); l++) {
+                        FeatureTreeNode constructsObj = constructsArr.get(i);
+                        List<FeatureTreeNode> featuresArr = children(constructsObj);
+                        if (featuresArr.size() == 0) {
+                            output.add("Construct " + constructsObj.getId() + " has no groups.");
                         }
                         //feature
-                        for (int m = 0; m < featuresArr.length(); m++) {
-                            JSONObject featuresObj = featuresArr.getJSONObject(i);
-                            String id = featuresObj.getString("id");
+                        for (int m = 0; m < featuresArr.size(); m++) {
+                            FeatureTreeNode featuresObj = featuresArr.get(i);
+                            String id = featuresObj.getId();
                             if (!checkEngineDependentForFeature(id)) {
                                 output.add("Feature " + id + " has no tests in engine dependent");
                             }
@@ -138,9 +149,8 @@ public class Tester {
         List<String> output = new ArrayList<>();
         output.add("Checking engineIndependent.json...");
         int counter = 0;
-        for (int i = 0; i < engineIndependentArr.length(); i++) {
-            JSONObject obj = engineIndependentArr.getJSONObject(i);
-            String id = obj.getString("featureID");
+        for (Test test : engineIndependentTests) {
+            String id = test.getFeatureId();
             if (!checkEngineDependentForFeature(id)) {
                 counter++;
                 output.add("Feature is not in engineDependent: " + id);
@@ -161,12 +171,11 @@ public class Tester {
         List<String> output = new ArrayList<>();
         output.add("Checking engineDependent.json...");
         int counter = 0;
-        for (int i = 0; i < engineDependentArr.length(); i++) {
-            JSONObject obj = engineDependentArr.getJSONObject(i);
-            String id = obj.getString("engineID");
+        for (Test test : engineDependentTests) {
+            String id = test.getEngineId();
             if (!checkEngineForEngine(id)) {
                 counter++;
-                output.add("No engine declaration for test: " + obj.getString("featureID") + "(" + id + ")");
+                output.add("No engine declaration for test: " + test.getFeatureId() + "(" + id + ")");
             }
         }
         output.add("Found " + counter + " tests without engine declarations.");
@@ -177,12 +186,12 @@ public class Tester {
         List<String> output = new ArrayList<>();
         output.add("Checking tests-engine-dependent.json for duplicates");
         int counter = 0;
-        for (int i = 0; i < engineDependentArr.length(); i++) {
-            for (int j = i + 1; j < engineDependentArr.length(); j++) {
-                String featureIdI = engineDependentArr.getJSONObject(i).getString(Constants.FEATURE_ID_TOKEN);
-                String featureIdJ = engineDependentArr.getJSONObject(j).getString(Constants.FEATURE_ID_TOKEN);
-                String engineIdI = engineDependentArr.getJSONObject(i).getString(Constants.ENGINE_ID_TOKEN);
-                String engineIdJ = engineDependentArr.getJSONObject(j).getString(Constants.ENGINE_ID_TOKEN);
+        for (int i = 0; i < engineDependentTests.size(); i++) {
+            for (int j = i + 1; j < engineDependentTests.size(); j++) {
+                String featureIdI = engineDependentTests.get(i).getFeatureId();
+                String featureIdJ = engineDependentTests.get(j).getFeatureId();
+                String engineIdI = engineDependentTests.get(i).getEngineId();
+                String engineIdJ = engineDependentTests.get(j).getEngineId();
                 if (featureIdI.equals(featureIdJ) && engineIdI.equals(engineIdJ)) {
                     counter++;
                     output.add("duplicate " + featureIdI + " on engine " + engineIdI);
@@ -200,9 +209,8 @@ public class Tester {
         List<String> output = new ArrayList<>();
         output.add("Checking engines.json...");
         int counter = 0;
-        for (int i = 0; i < enginesArr.length(); i++) {
-            JSONObject obj = enginesArr.getJSONObject(i);
-            String id = obj.getString("id");
+        for (Engine engine : engines) {
+            String id = engine.getId();
             if (!checkEngineDependentForEngine(id)) {
                 counter++;
                 output.add("No tests for engine: " + id);
@@ -216,12 +224,11 @@ public class Tester {
      * Checks if the engine dependent contains the engineId
      *
      * @param engineId to be checked
-     * @return true if the {@link #engineDependentArr} contains the engineId, false otherwise
+     * @return true if the {@link #engineDependentTests} contains the engineId, false otherwise
      */
     private boolean checkEngineDependentForEngine(String engineId) {
-        for (int i = 0; i < engineDependentArr.length(); i++) {
-            String id = engineDependentArr.getJSONObject(i).getString("engineID");
-            if (id.equals(engineId)) {
+        for (Test test : engineDependentTests) {
+            if (engineId.equals(test.getEngineId())) {
                 return true;
             }
         }
@@ -232,11 +239,11 @@ public class Tester {
      * Checks if the engines contains the engineId
      *
      * @param engineId to be checked
-     * @return true if the {@link #enginesArr} contains the engineId, false otherwise
+     * @return true if the {@link #engines} contains the engineId, false otherwise
      */
     private boolean checkEngineForEngine(String engineId) {
-        for (int i = 0; i < enginesArr.length(); i++) {
-            if (enginesArr.getJSONObject(i).getString("id").equals(engineId)) {
+        for (Engine engine : engines) {
+            if (engine.getId().equals(engineId)) {
                 return true;
             }
         }
@@ -247,11 +254,11 @@ public class Tester {
      * Checks if the engine independent contains the featureId
      *
      * @param featureId to be checked
-     * @return true if the {@link #engineIndependentArr} contains the featureId, false otherwise
+     * @return true if the {@link #engineDependentTests} contains the featureId, false otherwise
      */
     private boolean checkEngineDependentForFeature(String featureId) {
-        for (int i = 0; i < engineDependentArr.length(); i++) {
-            if (engineDependentArr.getJSONObject(i).getString("featureID").equals(featureId)) {
+        for (Test test : engineDependentTests) {
+            if (test.getFeatureId().equals(featureId)) {
                 return true;
             }
         }
@@ -262,24 +269,19 @@ public class Tester {
      * Checks if the feature tree contains the featureId.
      *
      * @param featureId to be checked
-     * @return true if the {@link #featureTreeArr} contains the engineId, false otherwise
+     * @return true if the {@link #featureTree} contains the engineId, false otherwise
      */
     private boolean checkFeatureTreeForFeature(String featureId) {
-        for (int i = 0; i < featureTreeArr.length(); i++) {
-            JSONArray langArr = featureTreeArr.getJSONObject(i).getJSONArray("languages");
+        for (FeatureTreeNode capability : featureTree) {
             //language
-            for (int j = 0; j < langArr.length(); j++) {
-                JSONArray groupArr = langArr.getJSONObject(j).getJSONArray("groups");
+            for (FeatureTreeNode language : children(capability)) {
                 //group
-                for (int k = 0; k < groupArr.length(); k++) {
-                    JSONArray constructsArr = groupArr.getJSONObject(k).getJSONArray("constructs");
+                for (FeatureTreeNode group : children(language)) {
                     //constructs
-                    for (int l = 0; l < constructsArr.length(); l++) {
-                        JSONArray featuresArr = constructsArr.getJSONObject(l).getJSONArray("features");
+                    for (FeatureTreeNode construct : children(group)) {
                         //feature
-                        for (int m = 0; m < featuresArr.length(); m++) {
-                            String id = featuresArr.getJSONObject(m).getString("id");
-                            if (id.equals(featureId)) {
+                        for (FeatureTreeNode feature : children(construct)) {
+                            if (feature.getId().equals(featureId)) {
                                 return true;
                             }
                         }
@@ -291,35 +293,11 @@ public class Tester {
     }
 
     /**
-     * Reads the file.
-     *
-     * @param path to be read
-     * @return the JSONArray of the file
-     */
-    private JSONArray readFile(String path) {
-        String source = readLines(path);
-        if (source == null || source == "") {
-            return new JSONArray();
-        }
-        return new JSONArray(source);
-    }
-
-    /**
-     * Reads the file as a line.
-     *
-     * @param filePath to be read
-     * @return the contents of the file, or '[]' in case of an error.
+     * @param node of the feature tree
+     * @return the nodes of the next level, empty if the node has none
      */
-    private String readLines(String filePath) {
-        String line = "[]";
-        try {
-            line = Files.readAllLines(Paths.get(filePath)).parallelStream()
-                    .reduce((s1, s2) -> s1 + s2)
-                    .orElse(line);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return line;
+    private List<FeatureTreeNode> children(FeatureTreeNode node) {
+        return node.getChildren() == null ? Collections.emptyList() : node.getChildren();
     }
 
     private void writeLines(List<String> lines, String filePath) {